@@ -0,0 +1,185 @@
+package pt.neticle.ark.templating;
+
+import pt.neticle.ark.templating.exception.RenderingException;
+import pt.neticle.ark.templating.renderer.InternalScope;
+import pt.neticle.ark.templating.renderer.RenderSinkFactory;
+import pt.neticle.ark.templating.renderer.Scope;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders one template for every scope of a batch, see {@link TemplatingEngine#renderBatch}.
+ *
+ * Each worker pulls the next scope from the shared iterator only once it's done with the previous one, so
+ * at most one item per worker is in flight and a slow sink or a lazily produced source is never outpaced.
+ * Workers render into their own buffer and scope, both reused from item to item, and hand each complete
+ * output to its sink in one go. The calling thread is one of the workers, the others run on a pool of
+ * daemon threads shared by every batch.
+ *
+ * Since each output is written whole, the engine's auto flush doesn't apply to batch renders, and neither
+ * do t:flush elements. Sinks that need to flush can do so themselves.
+ */
+final class BatchRenderer
+{
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * Threads are created as batches need them and end after being idle for a minute.
+     */
+    private static final ExecutorService workerPool = Executors.newCachedThreadPool((r) ->
+    {
+        Thread t = new Thread(r, "ark-templating-batch-" + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Buffers grown beyond this size by a large item are discarded rather than kept for the next ones.
+     */
+    private static final int maxRetainedBuffer = 1024 * 1024;
+
+    private final TemplatingEngine engine;
+    private final TemplateRootElement root;
+    private final Iterator<? extends Scope> scopes;
+    private final RenderSinkFactory sinks;
+    private final AtomicLong rendered;
+
+    /**
+     * Index of the next item, guarded by the scopes iterator.
+     */
+    private long nextIndex = 0;
+    private volatile Throwable failure;
+
+    BatchRenderer (TemplatingEngine engine, TemplateRootElement root, Iterator<? extends Scope> scopes, RenderSinkFactory sinks)
+    {
+        this.engine = engine;
+        this.root = root;
+        this.scopes = scopes;
+        this.sinks = sinks;
+        this.rendered = new AtomicLong();
+    }
+
+    /**
+     * Renders every item, stopping at the first failure.
+     *
+     * @param parallelism The amount of items rendered at the same time
+     * @return The amount of items rendered
+     * @throws IOException If rendering an item or writing it to its sink failed
+     */
+    long run (int parallelism) throws IOException
+    {
+        final Future<?>[] workers = new Future<?>[parallelism - 1];
+
+        for(int i = 0; i < workers.length; i++)
+        {
+            workers[i] = workerPool.submit(this::work);
+        }
+
+        work();
+
+        for(Future<?> worker : workers)
+        {
+            try
+            {
+                worker.get();
+            } catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                fail(e);
+            } catch(ExecutionException e)
+            {
+                fail(e.getCause());
+            }
+        }
+
+        final Throwable t = failure;
+
+        if(t instanceof IOException)
+        {
+            throw (IOException) t;
+        }
+
+        if(t instanceof RuntimeException)
+        {
+            throw (RuntimeException) t;
+        }
+
+        if(t instanceof Error)
+        {
+            throw (Error) t;
+        }
+
+        if(t != null)
+        {
+            throw new RenderingException(t);
+        }
+
+        return rendered.get();
+    }
+
+    private void work ()
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        final InternalScope scope = new InternalScope(null);
+
+        while(failure == null)
+        {
+            final Scope item;
+            final long index;
+
+            try
+            {
+                synchronized(scopes)
+                {
+                    if(!scopes.hasNext())
+                    {
+                        return;
+                    }
+
+                    item = scopes.next();
+                    index = nextIndex++;
+                }
+
+                engine.render(root, item, buffer, scope);
+
+                try(OutputStream os = sinks.open(index, item))
+                {
+                    buffer.writeTo(os);
+                }
+
+                rendered.incrementAndGet();
+            } catch(Throwable t)
+            {
+                fail(t);
+                return;
+            }
+
+            if(buffer.size() > maxRetainedBuffer)
+            {
+                buffer = new ByteArrayOutputStream(8192);
+            }
+            else
+            {
+                buffer.reset();
+            }
+        }
+    }
+
+    private synchronized void fail (Throwable t)
+    {
+        if(failure == null)
+        {
+            failure = t;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package pt.neticle.ark.templating;
+
+import pt.neticle.ark.templating.exception.ParsingException;
+import pt.neticle.ark.templating.parsing.TemplateParser;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Where to find a template registered by name only, to be parsed the first time it's used, see
+ * {@link TemplatingEngine.Initializer#withLazyLoading()}.
+ */
+final class LazyTemplateSource
+{
+    interface Opener
+    {
+        InputStream open () throws IOException;
+    }
+
+    private static final Pattern rootTag = Pattern.compile("<template\\b([^>]*)>");
+    private static final Pattern nameAttribute = Pattern.compile("(?:^|\\s)name\\s*=\\s*\"([^\"]*)\"");
+
+    /**
+     * How much of a file is read looking for its root element before giving up.
+     */
+    private static final int maxHeaderLength = 64 * 1024;
+
+    private final String location;
+    private final Opener opener;
+    private final TemplateParser parser;
+
+    LazyTemplateSource (String location, Opener opener, TemplateParser parser)
+    {
+        this.location = location;
+        this.opener = opener;
+        this.parser = parser;
+    }
+
+    String getLocation ()
+    {
+        return location;
+    }
+
+    TemplateRootElement load (TemplatingEngine engine) throws IOException, ParsingException
+    {
+        try(InputStream is = opener.open())
+        {
+            return engine.parseTemplate(is, parser);
+        }
+    }
+
+    /**
+     * Reads the beginning of a template file, only as far as needed to find the name of its root element.
+     *
+     * The scan is only a guess, e.g. the parser reads markup within comments as elements. If the template
+     * turns out to declare another name, it's registered under that name when loaded, as it would have
+     * been without lazy loading.
+     *
+     * @param file
+     * @return The name of the template, or null if the file doesn't start with a named template element
+     * @throws IOException
+     */
+    static String scanName (Path file) throws IOException
+    {
+        try(Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))
+        {
+            final StringBuilder header = new StringBuilder();
+            final char[] buffer = new char[1024];
+            int length;
+
+            while(header.length() < maxHeaderLength && (length = reader.read(buffer)) != -1)
+            {
+                header.append(buffer, 0, length);
+
+                Matcher tag = rootTag.matcher(header);
+
+                if(tag.find())
+                {
+                    Matcher name = nameAttribute.matcher(tag.group(1));
+                    return name.find() ? name.group(1) : null;
+                }
+            }
+
+            return null;
+        }
+    }
+}
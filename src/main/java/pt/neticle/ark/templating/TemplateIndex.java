@@ -0,0 +1,326 @@
+package pt.neticle.ark.templating;
+
+import pt.neticle.ark.templating.exception.LoaderException;
+import pt.neticle.ark.templating.exception.ParsingException;
+import pt.neticle.ark.templating.parsing.PretokenizedTemplateParser;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An index of the templates packaged as class-path resources, generated at build time so that they can be
+ * loaded without scanning the class-path, see {@link TemplatingEngine.Initializer#withClasspathTemplates()}.
+ *
+ * The index is stored at {@value #LOCATION}, relative to the root it indexes, e.g. a jar. Each line lists the
+ * name of a template, the path of its resource, relative to the same root, and the SHA-256 hash of its
+ * content, separated by tabs. Lines starting with # are ignored. Resources with the
+ * {@value PretokenizedTemplateParser#EXTENSION} extension are loaded as pre-tokenized templates, see
+ * {@link TemplatePretokenizer}.
+ *
+ * The index can be generated by running this class, e.g. with the exec-maven-plugin during the
+ * process-classes phase:
+ *
+ * <pre>
+ * java pt.neticle.ark.templating.TemplateIndex target/classes templates
+ * </pre>
+ *
+ * which indexes every .html file under target/classes/templates.
+ */
+public final class TemplateIndex
+{
+    public static final String LOCATION = "META-INF/ark-templating/templates.idx";
+
+    public static final class Entry
+    {
+        private final String templateName;
+        private final String resource;
+        private final String hash;
+
+        public Entry (String templateName, String resource, String hash)
+        {
+            this.templateName = templateName;
+            this.resource = resource;
+            this.hash = hash;
+        }
+
+        public String getTemplateName ()
+        {
+            return templateName;
+        }
+
+        /**
+         * @return The path of the template's resource, relative to the root of the index
+         */
+        public String getResource ()
+        {
+            return resource;
+        }
+
+        /**
+         * @return The SHA-256 hash of the template's content, in hexadecimal
+         */
+        public String getHash ()
+        {
+            return hash;
+        }
+    }
+
+    private final List<Entry> entries;
+
+    public TemplateIndex (List<Entry> entries)
+    {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public List<Entry> getEntries ()
+    {
+        return entries;
+    }
+
+    public static TemplateIndex read (InputStream is) throws IOException
+    {
+        final List<Entry> entries = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String line;
+
+        while((line = reader.readLine()) != null)
+        {
+            if(line.trim().isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+
+            String[] fields = line.split("\t");
+
+            if(fields.length != 3)
+            {
+                throw new IOException("Mal-formed template index entry: " + line);
+            }
+
+            entries.add(new Entry(fields[0], fields[1], fields[2]));
+        }
+
+        return new TemplateIndex(entries);
+    }
+
+    public void write (OutputStream os) throws IOException
+    {
+        final Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+
+        writer.write("# Generated by " + TemplateIndex.class.getName() + "\n");
+
+        for(Entry entry : entries)
+        {
+            writer.write(entry.templateName + "\t" + entry.resource + "\t" + entry.hash + "\n");
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Indexes every template file within a directory of the given class-path root.
+     *
+     * @param root The class-path root, e.g. target/classes
+     * @param directory The directory containing the templates, relative to the root
+     * @return
+     * @throws IOException
+     * @throws LoaderException If a template can't be parsed
+     */
+    public static TemplateIndex generate (Path root, String directory) throws IOException, LoaderException
+    {
+        final TemplatingEngine engine = new TemplatingEngine();
+        final List<Entry> entries = new ArrayList<>();
+        final List<Path> files;
+
+        try(Stream<Path> walk = Files.walk(root.resolve(directory)))
+        {
+            files = walk
+                .filter((f) -> Files.isRegularFile(f) && f.getFileName().toString().endsWith(".html"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        for(Path file : files)
+        {
+            final byte[] content = Files.readAllBytes(file);
+            final String name;
+
+            try
+            {
+                name = engine.registerTemplate(new ByteArrayInputStream(content));
+            } catch(ParsingException e)
+            {
+                throw new LoaderException(file, e);
+            }
+
+            if(name != null)
+            {
+                String resource = root.relativize(file).toString().replace(File.separatorChar, '/');
+                entries.add(new Entry(name, resource, hash(content)));
+            }
+        }
+
+        return new TemplateIndex(entries);
+    }
+
+    /**
+     * Registers the templates of every index found by the given class loader, reading each one straight
+     * from the root of its index, such as a jar, and checking it against the hash in the index.
+     *
+     * @param engine
+     * @param classLoader
+     * @throws IOException
+     * @throws LoaderException If a template doesn't match its index entry or can't be parsed
+     */
+    static void load (TemplatingEngine engine, ClassLoader classLoader) throws IOException, LoaderException
+    {
+        final Enumeration<URL> indexes = classLoader.getResources(LOCATION);
+
+        while(indexes.hasMoreElements())
+        {
+            final URL indexUrl = indexes.nextElement();
+            final String indexLocation = indexUrl.toString();
+            final String root = indexLocation.substring(0, indexLocation.length() - LOCATION.length());
+            final TemplateIndex index;
+
+            try(InputStream is = indexUrl.openStream())
+            {
+                index = read(is);
+            }
+
+            for(Entry entry : index.entries)
+            {
+                final URL resource = new URL(root + entry.resource);
+                final boolean pretokenized = entry.resource.endsWith(PretokenizedTemplateParser.EXTENSION);
+
+                if(engine.isLazyLoading())
+                {
+                    // The index already names the template, the resource is only read when it's first used
+                    engine.registerLazyTemplate(entry.templateName, new LazyTemplateSource(resource.toString(),
+                        () -> new ByteArrayInputStream(readVerified(resource, entry, indexLocation)),
+                        pretokenized ? new PretokenizedTemplateParser() : engine.getTemplateParser()));
+                    continue;
+                }
+
+                final byte[] content;
+
+                try
+                {
+                    content = readVerified(resource, entry, indexLocation);
+                } catch(IOException e)
+                {
+                    throw new LoaderException(resource.toString(), e);
+                }
+
+                final String name;
+
+                try
+                {
+                    name = pretokenized ?
+                        engine.registerTemplate(new ByteArrayInputStream(content), new PretokenizedTemplateParser()) :
+                        engine.registerTemplate(new ByteArrayInputStream(content));
+                } catch(ParsingException e)
+                {
+                    throw new LoaderException(resource.toString(), e);
+                }
+
+                if(!entry.templateName.equals(name))
+                {
+                    throw new LoaderException(resource.toString(),
+                        new IOException("Declares template " + name + " instead of " + entry.templateName));
+                }
+            }
+        }
+    }
+
+    private static byte[] readVerified (URL resource, Entry entry, String indexLocation) throws IOException
+    {
+        final byte[] content;
+
+        try(InputStream is = resource.openStream())
+        {
+            content = readAll(is);
+        }
+
+        if(!hash(content).equals(entry.hash))
+        {
+            throw new IOException("Content doesn't match the hash in " + indexLocation + ", the index is out of date");
+        }
+
+        return content;
+    }
+
+    static byte[] readAll (InputStream is) throws IOException
+    {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int length;
+
+        while((length = is.read(buffer)) != -1)
+        {
+            baos.write(buffer, 0, length);
+        }
+
+        return baos.toByteArray();
+    }
+
+    static String hash (byte[] content)
+    {
+        final byte[] digest;
+
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256").digest(content);
+        } catch(NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        final StringBuilder sb = new StringBuilder(digest.length * 2);
+
+        for(byte b : digest)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the index of a class-path root.
+     *
+     * @param args The class-path root, e.g. target/classes, and the directory containing the templates,
+     *             relative to the root
+     * @throws Exception
+     */
+    public static void main (String[] args) throws Exception
+    {
+        if(args.length != 2)
+        {
+            System.err.println("Usage: " + TemplateIndex.class.getName() + " <class-path root> <template directory>");
+            System.exit(1);
+        }
+
+        final Path root = Paths.get(args[0]);
+        final Path output = root.resolve(LOCATION);
+        final TemplateIndex index = generate(root, args[1]);
+
+        Files.createDirectories(output.getParent());
+
+        try(OutputStream os = Files.newOutputStream(output))
+        {
+            index.write(os);
+        }
+
+        System.out.println("Indexed " + index.entries.size() + " templates into " + output);
+    }
+}
@@ -0,0 +1,235 @@
+package pt.neticle.ark.templating;
+
+import pt.neticle.ark.templating.exception.LoaderException;
+import pt.neticle.ark.templating.exception.ParsingException;
+import pt.neticle.ark.templating.exception.PreprocessingException;
+import pt.neticle.ark.templating.parsing.PretokenizedTemplateParser;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+import pt.neticle.ark.templating.structure.functions.DefaultFunctionHandler;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Validates and pre-tokenizes templates at build time.
+ *
+ * Every template of a source directory is parsed and pre-processed against the others, with the functions
+ * registered in the given initializer, so that any errors are reported during the build: mal-formed
+ * declarations, closing-tag mismatches, mal-formed expressions, unknown functions, and custom elements,
+ * named prefix:name, that aren't declared by any template.
+ *
+ * When there are no errors, each template is written in pre-tokenized form, along with a {@link TemplateIndex}
+ * listing them, so that {@link TemplatingEngine.Initializer#withClasspathTemplates()} loads them without
+ * tokenizing their markup, see {@link PretokenizedTemplateParser}. Expressions are still parsed, and templates
+ * pre-processed, when the engine loads them.
+ *
+ * Can be run during the build, e.g. with the exec-maven-plugin, see {@link #main(String[])}.
+ */
+public final class TemplatePretokenizer
+{
+    /**
+     * Elements of the t: prefix handled by the engine itself.
+     */
+    private static final Set<String> builtInElements = new HashSet<>(Arrays.asList("t:flush", "t:meta"));
+
+    private final TemplatingEngine.Initializer initializer;
+    private boolean unknownElementsAllowed = false;
+
+    /**
+     * @param initializer An initializer with the functions and options templates will be used with
+     */
+    public TemplatePretokenizer (TemplatingEngine.Initializer initializer)
+    {
+        this.initializer = initializer;
+    }
+
+    /**
+     * Stops custom elements not declared by any of the pre-tokenized templates from being reported as errors, for
+     * when they are declared by templates loaded from elsewhere.
+     *
+     * @return
+     */
+    public TemplatePretokenizer withUnknownElementsAllowed ()
+    {
+        unknownElementsAllowed = true;
+        return this;
+    }
+
+    /**
+     * Validates every template file in the source directory and, if there are no errors, writes them in
+     * pre-tokenized form into the given class-path root, along with their index.
+     *
+     * @param sourceDirectory The directory containing the templates, searched recursively for .html files
+     * @param outputRoot The class-path root to write to, e.g. target/classes
+     * @param resourceDirectory The directory within the root to write the pre-tokenized templates to
+     * @return The errors found, empty if the templates were pre-tokenized
+     * @throws IOException
+     * @throws LoaderException
+     */
+    public List<String> pretokenize (Path sourceDirectory, Path outputRoot, String resourceDirectory) throws IOException, LoaderException
+    {
+        final TemplatingEngine engine = initializer.build();
+        final List<String> errors = new ArrayList<>();
+        final Map<Path, byte[]> pretokenized = new LinkedHashMap<>();
+        final Map<Path, TemplateRootElement> templates = new LinkedHashMap<>();
+        final Map<String, Path> names = new HashMap<>();
+        final List<Path> files;
+
+        try(Stream<Path> walk = Files.walk(sourceDirectory))
+        {
+            files = walk
+                .filter((f) -> Files.isRegularFile(f) && f.getFileName().toString().endsWith(".html"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        for(Path file : files)
+        {
+            final TemplateRootElement rootElement = new TemplateRootElement(engine);
+
+            try(InputStream is = Files.newInputStream(file))
+            {
+                pretokenized.put(file, PretokenizedTemplateParser.pretokenize(rootElement, is));
+            } catch(ParsingException e)
+            {
+                errors.add(file + ":" + e.getLine() + "," + e.getColumn() + ": " + e.getMessage());
+                continue;
+            }
+
+            if(!rootElement.hasAttribute("name"))
+            {
+                errors.add(file + ": The template has no name");
+                continue;
+            }
+
+            final Path previous = names.put(rootElement.getTemplateName(), file);
+
+            if(previous != null)
+            {
+                errors.add(file + ": Template " + rootElement.getTemplateName() + " is also declared in " + previous);
+                continue;
+            }
+
+            templates.put(file, rootElement);
+        }
+
+        // Each template is only pre-processed below, so that its errors are reported against its file
+        engine.publish(templates.values(), Collections.emptySet(), false);
+
+        for(Map.Entry<Path, TemplateRootElement> entry : templates.entrySet())
+        {
+            if(!unknownElementsAllowed)
+            {
+                for(String element : new TreeSet<>(entry.getValue().getChildElementTypes()))
+                {
+                    if(element.indexOf(':') > 0 && !builtInElements.contains(element) && !engine.hasTemplate(element))
+                    {
+                        errors.add(entry.getKey() + ": Unknown element " + element);
+                    }
+                }
+            }
+
+            try
+            {
+                entry.getValue().prepare();
+            } catch(PreprocessingException e)
+            {
+                errors.add(entry.getKey() + ": " + e.getMessage());
+            }
+        }
+
+        if(!errors.isEmpty())
+        {
+            return errors;
+        }
+
+        final List<TemplateIndex.Entry> entries = new ArrayList<>();
+
+        for(Map.Entry<Path, TemplateRootElement> entry : templates.entrySet())
+        {
+            final String relative = sourceDirectory.relativize(entry.getKey()).toString().replace(File.separatorChar, '/');
+            final String resource = resourceDirectory + "/" +
+                relative.substring(0, relative.length() - ".html".length()) + PretokenizedTemplateParser.EXTENSION;
+            final byte[] content = pretokenized.get(entry.getKey());
+            final Path output = outputRoot.resolve(resource);
+
+            Files.createDirectories(output.getParent());
+            Files.write(output, content);
+
+            entries.add(new TemplateIndex.Entry(entry.getValue().getTemplateName(), resource, TemplateIndex.hash(content)));
+        }
+
+        final Path index = outputRoot.resolve(TemplateIndex.LOCATION);
+        Files.createDirectories(index.getParent());
+
+        try(OutputStream os = Files.newOutputStream(index))
+        {
+            new TemplateIndex(entries).write(os);
+        }
+
+        return errors;
+    }
+
+    /**
+     * Pre-tokenizes the templates of a source directory into a class-path root, exiting with a non-zero status
+     * when any errors are found.
+     *
+     * Arguments: the source directory, the class-path root, the template directory within it, and the class
+     * names of any custom functions used by the templates, implementations of {@link DefaultFunctionHandler}
+     * with a public no-arguments constructor. --allow-unknown-elements may be given among the function names.
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main (String[] args) throws Exception
+    {
+        if(args.length < 3)
+        {
+            System.err.println("Usage: " + TemplatePretokenizer.class.getName() +
+                " <source directory> <class-path root> <template directory> [--allow-unknown-elements] [function class...]");
+            System.exit(1);
+        }
+
+        final TemplatingEngine.Initializer initializer = TemplatingEngine.initializer();
+        boolean allowUnknownElements = false;
+
+        for(int i = 3; i < args.length; i++)
+        {
+            if(args[i].equals("--allow-unknown-elements"))
+            {
+                allowUnknownElements = true;
+                continue;
+            }
+
+            initializer.withFunction((DefaultFunctionHandler<?>) Class.forName(args[i], true,
+                Thread.currentThread().getContextClassLoader()).getDeclaredConstructor().newInstance());
+        }
+
+        final TemplatePretokenizer pretokenizer = new TemplatePretokenizer(initializer);
+
+        if(allowUnknownElements)
+        {
+            pretokenizer.withUnknownElementsAllowed();
+        }
+
+        final List<String> errors = pretokenizer.pretokenize(Paths.get(args[0]), Paths.get(args[1]), args[2]);
+
+        if(!errors.isEmpty())
+        {
+            for(String error : errors)
+            {
+                System.err.println(error);
+            }
+
+            System.err.println(errors.size() + " template error(s) found");
+            System.exit(1);
+        }
+
+        System.out.println("Pre-tokenized templates from " + args[0] + " into " + Paths.get(args[1]).resolve(args[2]));
+    }
+}
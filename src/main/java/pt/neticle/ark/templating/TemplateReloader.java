@@ -0,0 +1,516 @@
+package pt.neticle.ark.templating;
+
+import pt.neticle.ark.templating.exception.LoaderException;
+import pt.neticle.ark.templating.exception.ParsingException;
+import pt.neticle.ark.templating.jfr.FlightRecorderSupport;
+import pt.neticle.ark.templating.jfr.TemplateReloadEvent;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * The hot-reload pipeline for watched search directories.
+ *
+ * Filesystem events are collected until no new events arrive for the configured debounce window,
+ * after which every affected file is handled as one batch: created or modified files whose content
+ * hash changed are re-parsed, deleted files are unregistered and new directories start being watched.
+ * The resulting templates are then handed over to the engine to be pre-processed and published
+ * together, while renders keep using the previous instruction sets.
+ */
+final class TemplateReloader implements Closeable
+{
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final TemplatingEngine engine;
+    private final long debounceMillis;
+    private final BiConsumer<Path, LoaderException> errorHandler;
+
+    private final Map<FileSystem, WatchService> watchServices;
+    private final Map<WatchKey, Path> watchKeyPaths;
+    private final Set<Path> watchedDirectories;
+
+    /**
+     * Key: Template file
+     * Value: Qualified name of the template declared in the file
+     */
+    private final Map<Path, String> templateNames;
+
+    /**
+     * Key: Template file
+     * Value: Digest of the file's content when it was last loaded
+     */
+    private final Map<Path, byte[]> contentHashes;
+
+    /**
+     * Runs one thread per watch service, including those created for directories watched after starting.
+     * Guarded by watchServices.
+     */
+    private ExecutorService executor;
+    private volatile boolean closed = false;
+
+    /**
+     * A file read because its content changed, to be recorded as loaded once its template is published.
+     */
+    private static final class LoadedFile
+    {
+        private final byte[] hash;
+
+        /**
+         * The template declared in the file, or null if it doesn't declare one.
+         */
+        private final TemplateRootElement rootElement;
+
+        private LoadedFile (byte[] hash, TemplateRootElement rootElement)
+        {
+            this.hash = hash;
+            this.rootElement = rootElement;
+        }
+    }
+
+    TemplateReloader (TemplatingEngine engine, long debounceMillis, BiConsumer<Path, LoaderException> errorHandler)
+    {
+        this.engine = engine;
+        this.debounceMillis = debounceMillis;
+        this.errorHandler = errorHandler;
+
+        watchServices = new HashMap<>();
+        watchKeyPaths = new ConcurrentHashMap<>();
+        watchedDirectories = ConcurrentHashMap.newKeySet();
+        templateNames = new ConcurrentHashMap<>();
+        contentHashes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Starts watching the given directory, recursively, and registers any templates found in it.
+     *
+     * @param directory
+     * @throws IOException
+     * @throws LoaderException
+     */
+    void watch (Path directory) throws IOException, LoaderException
+    {
+        if(!Files.exists(directory))
+        {
+            throw new FileNotFoundException(directory.toString());
+        }
+
+        Map<Path, LoadedFile> loaded = new LinkedHashMap<>();
+        List<TemplateRootElement> templates = new ArrayList<>();
+        MessageDigest digest = newDigest();
+
+        for(Path file : registerDirectory(directory))
+        {
+            if(!isTemplateFile(file))
+            {
+                continue;
+            }
+
+            try
+            {
+                LoadedFile loadedFile = load(file, digest);
+
+                if(loadedFile != null)
+                {
+                    loaded.put(file, loadedFile);
+
+                    if(loadedFile.rootElement != null)
+                    {
+                        templates.add(loadedFile.rootElement);
+                    }
+                }
+            } catch(ParsingException e)
+            {
+                throw new LoaderException(file, e);
+            }
+        }
+
+        engine.publish(templates, Collections.emptySet());
+        commit(loaded);
+    }
+
+    /**
+     * Starts the background threads listening for filesystem events.
+     */
+    void start ()
+    {
+        synchronized(watchServices)
+        {
+            executor = Executors.newCachedThreadPool((r) ->
+            {
+                Thread t = new Thread(r, "ark-templating-reloader-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+            for(WatchService service : watchServices.values())
+            {
+                executor.submit(() -> handleWatchService(service));
+            }
+        }
+    }
+
+    @Override
+    public void close ()
+    {
+        closed = true;
+
+        final ExecutorService executor;
+
+        synchronized(watchServices)
+        {
+            executor = this.executor;
+
+            for(WatchService service : watchServices.values())
+            {
+                try
+                {
+                    service.close();
+                } catch(IOException e)
+                {
+                    // nothing else we can do at this point
+                }
+            }
+        }
+
+        if(executor != null)
+        {
+            executor.shutdownNow();
+
+            try
+            {
+                executor.awaitTermination(debounceMillis + 1000, TimeUnit.MILLISECONDS);
+            } catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void handleWatchService (WatchService service)
+    {
+        final Set<Path> pending = new LinkedHashSet<>();
+        long deadline = 0;
+
+        while(!closed)
+        {
+            WatchKey key;
+
+            try
+            {
+                if(pending.isEmpty())
+                {
+                    key = service.take();
+                }
+                else
+                {
+                    long remaining = deadline - System.currentTimeMillis();
+                    key = remaining > 0 ? service.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                }
+            } catch(InterruptedException | ClosedWatchServiceException e)
+            {
+                return;
+            }
+
+            if(key == null)
+            {
+                // No more events within the debounce window, the batch is complete
+                reload(pending);
+                pending.clear();
+                continue;
+            }
+
+            Path base = watchKeyPaths.get(key);
+
+            if(base != null)
+            {
+                for(WatchEvent<?> ev : key.pollEvents())
+                {
+                    if(ev.kind() == StandardWatchEventKinds.OVERFLOW)
+                    {
+                        // Events were lost, so we go through the whole directory again and rely
+                        // on the content hashes to find out what actually changed.
+                        pending.add(base);
+                    }
+                    else if(ev.context() instanceof Path)
+                    {
+                        pending.add(base.resolve((Path) ev.context()));
+                    }
+                }
+            }
+
+            if(!key.reset())
+            {
+                // The directory is gone or no longer accessible
+                watchKeyPaths.remove(key);
+
+                if(base != null)
+                {
+                    watchedDirectories.remove(base);
+                }
+            }
+
+            deadline = System.currentTimeMillis() + debounceMillis;
+        }
+    }
+
+    private void reload (Set<Path> paths)
+    {
+        final TemplateReloadEvent event = FlightRecorderSupport.ENABLED ? new TemplateReloadEvent() : null;
+
+        if(event != null)
+        {
+            event.begin();
+        }
+
+        final Map<Path, TemplateRootElement> added = new LinkedHashMap<>();
+        final Map<Path, LoadedFile> loaded = new LinkedHashMap<>();
+        final Set<String> removed = new HashSet<>();
+        final MessageDigest digest = newDigest();
+
+        for(Path path : paths)
+        {
+            List<Path> files;
+
+            if(Files.isDirectory(path))
+            {
+                try
+                {
+                    files = registerDirectory(path);
+                } catch(IOException e)
+                {
+                    errorHandler.accept(path, new LoaderException(path, e));
+                    continue;
+                }
+
+                // Templates that disappeared while we weren't looking, e.g. after an overflow
+                templateNames.keySet().stream()
+                    .filter(f -> f.startsWith(path) && !Files.exists(f))
+                    .forEach(f -> unload(f, removed));
+            }
+            else if(!Files.exists(path))
+            {
+                // Either a file or a whole directory was deleted
+                templateNames.keySet().stream()
+                    .filter(f -> f.startsWith(path))
+                    .forEach(f -> unload(f, removed));
+
+                continue;
+            }
+            else
+            {
+                files = Collections.singletonList(path);
+            }
+
+            for(Path file : files)
+            {
+                if(!isTemplateFile(file))
+                {
+                    continue;
+                }
+
+                try
+                {
+                    String previousName = templateNames.get(file);
+                    LoadedFile loadedFile = load(file, digest);
+
+                    if(loadedFile == null)
+                    {
+                        continue;
+                    }
+
+                    loaded.put(file, loadedFile);
+
+                    TemplateRootElement rootElement = loadedFile.rootElement;
+
+                    if(rootElement != null)
+                    {
+                        added.put(file, rootElement);
+                    }
+
+                    if(previousName != null && (rootElement == null || !previousName.equals(rootElement.getTemplateName())) &&
+                        !declaredElsewhere(previousName, file))
+                    {
+                        removed.add(previousName);
+                    }
+                } catch(ParsingException | IOException | RuntimeException e)
+                {
+                    errorHandler.accept(file, new LoaderException(file, e));
+                }
+            }
+        }
+
+        if(added.isEmpty() && removed.isEmpty())
+        {
+            commit(loaded);
+            return;
+        }
+
+        // A template may have been moved to another file within the same batch
+        added.values().forEach(r -> removed.remove(r.getTemplateName()));
+
+        try
+        {
+            engine.publish(added.values(), removed);
+        } catch(RuntimeException e)
+        {
+            // Nothing is recorded as loaded, so the files are read again on their next change
+            added.keySet().forEach(file -> errorHandler.accept(file, new LoaderException(file, e)));
+            return;
+        }
+
+        commit(loaded);
+
+        if(event != null && event.shouldCommit())
+        {
+            event.set(paths.size(), added.size(), removed.size());
+            event.commit();
+        }
+    }
+
+    /**
+     * Reads and parses the given file, unless its content is the same as the last time it was loaded.
+     * The file is only recorded as loaded by {@link #commit(Map)}, once its template was published.
+     *
+     * @return The file's hash and template, or null if the file didn't change
+     */
+    private LoadedFile load (Path file, MessageDigest digest) throws IOException, ParsingException
+    {
+        byte[] content = Files.readAllBytes(file);
+        byte[] hash = digest.digest(content);
+
+        if(Arrays.equals(hash, contentHashes.get(file)))
+        {
+            return null;
+        }
+
+        TemplateRootElement rootElement = engine.parseTemplate(new ByteArrayInputStream(content));
+
+        // Such as a file that was just created and is still empty
+        boolean declaresTemplate = rootElement != null && rootElement.hasAttribute("name");
+
+        return new LoadedFile(hash, declaresTemplate ? rootElement : null);
+    }
+
+    /**
+     * Records the given files as loaded, after their templates were published.
+     */
+    private void commit (Map<Path, LoadedFile> loaded)
+    {
+        loaded.forEach((file, loadedFile) ->
+        {
+            contentHashes.put(file, loadedFile.hash);
+
+            if(loadedFile.rootElement != null)
+            {
+                templateNames.put(file, loadedFile.rootElement.getTemplateName());
+            }
+            else
+            {
+                templateNames.remove(file);
+            }
+        });
+    }
+
+    private boolean declaredElsewhere (String name, Path file)
+    {
+        return templateNames.entrySet().stream()
+            .anyMatch(e -> !e.getKey().equals(file) && e.getValue().equals(name));
+    }
+
+    private void unload (Path file, Set<String> removed)
+    {
+        String name = templateNames.remove(file);
+        contentHashes.remove(file);
+
+        if(name != null && !templateNames.containsValue(name))
+        {
+            removed.add(name);
+        }
+    }
+
+    /**
+     * Registers the directory and all of its sub-directories with the watch service.
+     *
+     * @return Every file found within the directory tree
+     */
+    private List<Path> registerDirectory (Path directory) throws IOException
+    {
+        final List<Path> files = new ArrayList<>();
+
+        try(Stream<Path> tree = Files.walk(directory))
+        {
+            for(Path path : (Iterable<Path>) tree::iterator)
+            {
+                if(!Files.isDirectory(path))
+                {
+                    files.add(path);
+                    continue;
+                }
+
+                if(watchedDirectories.add(path))
+                {
+                    WatchKey wk = path.register(getWatchService(path.getFileSystem()),
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+
+                    watchKeyPaths.put(wk, path);
+                }
+            }
+        }
+
+        return files;
+    }
+
+    private WatchService getWatchService (FileSystem fs) throws IOException
+    {
+        synchronized(watchServices)
+        {
+            WatchService service = watchServices.get(fs);
+
+            if(service == null)
+            {
+                watchServices.put(fs, service = fs.newWatchService());
+
+                if(executor != null && !closed)
+                {
+                    // A directory on another file system, watched after the reloader started
+                    final WatchService newService = service;
+                    executor.submit(() -> handleWatchService(newService));
+                }
+            }
+
+            return service;
+        }
+    }
+
+    private static boolean isTemplateFile (Path file)
+    {
+        return file.getFileName().toString().endsWith(".html");
+    }
+
+    private static MessageDigest newDigest ()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
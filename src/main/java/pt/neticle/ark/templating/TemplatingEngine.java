@@ -2,25 +2,33 @@ package pt.neticle.ark.templating;
 
 import pt.neticle.ark.templating.exception.LoaderException;
 import pt.neticle.ark.templating.exception.ParsingException;
-import pt.neticle.ark.templating.functional.CheckedFunction;
+import pt.neticle.ark.templating.exception.RenderingException;
 import pt.neticle.ark.templating.parsing.DefaultTemplateParser;
 import pt.neticle.ark.templating.parsing.TemplateParser;
-import pt.neticle.ark.templating.renderer.InternalScope;
-import pt.neticle.ark.templating.renderer.PreprocessedRenderer;
-import pt.neticle.ark.templating.renderer.Scope;
+import pt.neticle.ark.templating.processing.PreprocessedInstructionSet;
+import pt.neticle.ark.templating.jfr.FlightRecorderSupport;
+import pt.neticle.ark.templating.jfr.TemplateRenderEvent;
+import pt.neticle.ark.templating.metrics.RenderListener;
+import pt.neticle.ark.templating.renderer.*;
 import pt.neticle.ark.templating.structure.ReadableElement;
 import pt.neticle.ark.templating.structure.TemplateRootElement;
 import pt.neticle.ark.templating.structure.expressions.ExpressionMatcher;
+import pt.neticle.ark.templating.structure.expressions.Truthiness;
 import pt.neticle.ark.templating.structure.functions.DefaultFunctionHandler;
 import pt.neticle.ark.templating.structure.functions.FunctionCatalog;
 import pt.neticle.ark.templating.structure.functions.FunctionHandler;
+import pt.neticle.ark.templating.structure.functions.IfFunction;
+import pt.neticle.ark.templating.structure.properties.PropertyResolver;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 /**
  * The main object of the ark-templating library. It contains all registered templates as well as
@@ -30,7 +38,7 @@ import java.util.function.BiConsumer;
  * {@link pt.neticle.ark.templating.TemplatingEngine.Initializer} can be used to configure and
  * initialize an instance of the engine.
  */
-public class TemplatingEngine
+public class TemplatingEngine implements Closeable
 {
 
     /**
@@ -46,8 +54,19 @@ public class TemplatingEngine
     /**
      * Key: Template's qualified name
      * Value: Template's root element
+     *
+     * This map is never modified, changes are made to a copy that then replaces it, so that
+     * readers always see a consistent set of templates.
+     */
+    private volatile Map<String, TemplateRootElement> rootElementsRegistry;
+
+    /**
+     * Templates registered by name only, not parsed yet, see {@link Initializer#withLazyLoading()}.
+     *
+     * Key: Template name
+     * Value: Where to load the template from
      */
-    private final Map<String, TemplateRootElement> rootElementsRegistry;
+    private final Map<String, LazyTemplateSource> lazyTemplates;
 
     /**
      * Key: Template's qualified name
@@ -64,7 +83,31 @@ public class TemplatingEngine
     /**
      * Last time the templates were pre-processed, as a milliseconds timestamp.
      */
-    private long lastPreprocessingRun = 0;
+    private volatile long lastPreprocessingRun = 0;
+
+    /**
+     * The hot-reload pipeline watching this engine's search directories, if any.
+     */
+    private TemplateReloader reloader;
+
+    /**
+     * Amount of bytes after which the output is flushed for the first time, or 0 to leave flushing
+     * up to the output stream and any t:flush elements.
+     */
+    private long autoFlushThreshold = 0;
+    private boolean minifyOutput = false;
+    private boolean releaseDom = false;
+    private boolean lazyLoading = false;
+
+    /**
+     * Level used for compressed renders, from 0 to 9, or -1 for the default level.
+     */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Listener notified about the work done while rendering, or null if none was registered.
+     */
+    private RenderListener renderListener = null;
 
     public TemplatingEngine ()
     {
@@ -76,9 +119,10 @@ public class TemplatingEngine
         this.templateParser = templateParser;
         this.expressionMatcher = expressionMatcher;
 
-        this.rootElementsRegistry = new HashMap<>();
-        this.rootElementsMetaData = new HashMap<>();
-        this.registryTimestamps = new HashMap<>();
+        this.rootElementsRegistry = Collections.emptyMap();
+        this.lazyTemplates = new ConcurrentHashMap<>();
+        this.rootElementsMetaData = new ConcurrentHashMap<>();
+        this.registryTimestamps = new ConcurrentHashMap<>();
     }
 
     /**
@@ -95,16 +139,38 @@ public class TemplatingEngine
      * When called, this method filters out templates that haven't changed since the last pre-processing
      * run, so you don't have to worry about unnecessary processing occurring here.
      */
-    public void preprocessChanges ()
+    public synchronized void preprocessChanges ()
     {
         final long previousRun = lastPreprocessingRun;
         lastPreprocessingRun = System.currentTimeMillis();
 
+        final Map<String, TemplateRootElement> registry = rootElementsRegistry;
+
         registryTimestamps.entrySet().stream()
             .filter(e -> e.getValue() > previousRun)
-            .map(e -> rootElementsRegistry.get(e.getKey()))
+            .map(e -> registry.get(e.getKey()))
             .filter(e -> e != null)
             .forEach(e -> e.prepare());
+
+        // Expansions are linked once every template is prepared, regardless of the order they were prepared in
+        registry.values().stream()
+            .filter(TemplateRootElement::isPrepared)
+            .forEach(e -> e.getInstructionSet().link(t -> t.isPrepared() ? t.getInstructionSet() : null));
+    }
+
+    /**
+     * Stops any background work started for this engine, such as the hot-reload watchers.
+     *
+     * The engine remains usable for rendering after being closed, but changes to the template
+     * files will no longer be picked up.
+     */
+    @Override
+    public void close ()
+    {
+        if(reloader != null)
+        {
+            reloader.close();
+        }
     }
 
     /**
@@ -160,25 +226,34 @@ public class TemplatingEngine
      */
     public String registerTemplate (InputStream is) throws IOException, ParsingException
     {
-        TemplateRootElement rootElement = templateParser.parse(new TemplateRootElement(this), is);
+        return registerTemplate(is, templateParser);
+    }
+
+    /**
+     * Attempts to parse and register a new template with the given parser, such as a
+     * {@link pt.neticle.ark.templating.parsing.PretokenizedTemplateParser} for pre-tokenized templates.
+     *
+     * @param is An inputstream containing the template in the format read by the parser
+     * @param parser The parser to read the template with
+     *
+     * @return The tag-name of the newly defined custom element type.
+     *
+     * @throws IOException Thrown for any errors while reading from the provided stream
+     * @throws ParsingException Thrown for any parser errors while parsing the provided declaration
+     */
+    public String registerTemplate (InputStream is, TemplateParser parser) throws IOException, ParsingException
+    {
+        TemplateRootElement rootElement = parseTemplate(is, parser);
 
         if(rootElement != null)
         {
-            rootElementsRegistry.compute(rootElement.getTemplateName(), (k, v) -> rootElement);
-            rootElementsMetaData.compute(rootElement.getTemplateName(), (k, v) -> rootElement.getMetaData());
-
-            registryTimestamps.compute(rootElement.getTemplateName(), (k, v) -> System.currentTimeMillis());
-
             // We don't pre-process initially because templates may depend on each other, so we'll load everything and
             // once the user calls getTemplate for the first time, the initial pre-processing run will be executed.
             // After that, we always pre-process on new changes.
             //
             // Alternative to this would be to make the user responsible for registering templates in the correct order
             // regarding dependencies, but we don't want to create that extra hassle.
-            if(lastPreprocessingRun > 0)
-            {
-                preprocessChanges();
-            }
+            publish(Collections.singletonList(rootElement), Collections.emptySet());
 
             return rootElement.getTemplateName();
         }
@@ -186,6 +261,192 @@ public class TemplatingEngine
         return null;
     }
 
+    /**
+     * Parses a template declaration without registering it.
+     *
+     * @param is
+     * @return
+     * @throws IOException
+     * @throws ParsingException
+     */
+    TemplateRootElement parseTemplate (InputStream is) throws IOException, ParsingException
+    {
+        return parseTemplate(is, templateParser);
+    }
+
+    TemplateRootElement parseTemplate (InputStream is, TemplateParser parser) throws IOException, ParsingException
+    {
+        if(!releaseDom)
+        {
+            return parser.parse(new TemplateRootElement(this), is);
+        }
+
+        final ByteArrayOutputStream source = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int length;
+
+        while((length = is.read(buffer)) != -1)
+        {
+            source.write(buffer, 0, length);
+        }
+
+        final TemplateRootElement rootElement =
+            parser.parse(new TemplateRootElement(this), new ByteArrayInputStream(source.toByteArray()));
+
+        if(rootElement != null)
+        {
+            rootElement.setSource(source.toByteArray(), parser);
+        }
+
+        return rootElement;
+    }
+
+    /**
+     * Registers and removes a batch of templates at once.
+     *
+     * If the initial pre-processing run already happened, the added templates and the templates expanding
+     * one of the changed names are pre-processed, and the templates depending on those through other
+     * templates are copied. They're all linked to each other before anything becomes visible, and renders
+     * keep using the previous instruction sets, which are never modified and stay linked to each other.
+     *
+     * @param added Parsed templates to register, replacing any existing ones with the same name
+     * @param removed Names of templates to unregister
+     */
+    synchronized void publish (Collection<TemplateRootElement> added, Collection<String> removed)
+    {
+        publish(added, removed, lastPreprocessingRun > 0);
+    }
+
+    /**
+     * @param preprocess Whether to pre-process the batch, otherwise the added templates are left for the
+     *                   caller to prepare, as {@link TemplatePretokenizer} does to report their errors one by one
+     */
+    synchronized void publish (Collection<TemplateRootElement> added, Collection<String> removed, boolean preprocess)
+    {
+        final Map<String, TemplateRootElement> staged = new HashMap<>(rootElementsRegistry);
+        final Set<String> changed = new HashSet<>(removed);
+        final long now = System.currentTimeMillis();
+
+        // Names no longer pending lazy loading once the batch is published
+        final Set<String> settled = new HashSet<>(removed);
+
+        removed.forEach(staged::remove);
+
+        for(TemplateRootElement rootElement : added)
+        {
+            staged.put(rootElement.getTemplateName(), rootElement);
+            changed.add(rootElement.getTemplateName());
+            settled.add(rootElement.getTemplateName());
+        }
+
+        if(preprocess)
+        {
+            final Map<TemplateRootElement, PreprocessedInstructionSet> prepared = new HashMap<>();
+
+            // Templates loaded on demand while pre-processing become part of the batch
+            final Function<String, TemplateRootElement> templates = (name) ->
+                staged.containsKey(name) ? staged.get(name) :
+                    settled.contains(name) ? null : loadLazyTemplate(name, staged, settled);
+
+            // Expansions of a replaced or removed template are resolved again, so templates declaring them
+            // are pre-processed along with the added ones
+            for(TemplateRootElement rootElement : new ArrayList<>(staged.values()))
+            {
+                if(added.contains(rootElement) || rootElement.dependsOnAny(changed))
+                {
+                    prepared.put(rootElement, rootElement.preprocess(templates));
+                }
+            }
+
+            // Templates expanding those, directly or through other templates, only need to be linked to the
+            // new instruction sets. They're linked as copies, leaving the sets renders may be using untouched.
+            final Set<String> linkedNames = new HashSet<>();
+            prepared.keySet().forEach(t -> linkedNames.add(t.getTemplateName()));
+
+            boolean grew;
+
+            do
+            {
+                grew = false;
+
+                for(TemplateRootElement rootElement : staged.values())
+                {
+                    if(!prepared.containsKey(rootElement) && rootElement.isPrepared() &&
+                        rootElement.dependsOnAny(linkedNames))
+                    {
+                        prepared.put(rootElement, rootElement.getInstructionSet().copy());
+                        linkedNames.add(rootElement.getTemplateName());
+                        grew = true;
+                    }
+                }
+            } while(grew);
+
+            prepared.values().forEach(set -> set.link(t -> prepared.containsKey(t) ? prepared.get(t) :
+                t.isPrepared() ? t.getInstructionSet() : null));
+
+            prepared.forEach(TemplateRootElement::setInstructionSet);
+            lastPreprocessingRun = now;
+        }
+
+        for(String name : removed)
+        {
+            if(!staged.containsKey(name))
+            {
+                rootElementsMetaData.remove(name);
+                registryTimestamps.remove(name);
+            }
+        }
+
+        for(TemplateRootElement rootElement : added)
+        {
+            rootElementsMetaData.put(rootElement.getTemplateName(), rootElement.getMetaData());
+            registryTimestamps.put(rootElement.getTemplateName(), now);
+        }
+
+        for(String name : settled)
+        {
+            lazyTemplates.remove(name);
+
+            // Also covers templates loaded on demand while pre-processing
+            final TemplateRootElement rootElement = staged.get(name);
+
+            if(rootElement != null)
+            {
+                rootElementsMetaData.put(name, rootElement.getMetaData());
+            }
+        }
+
+        rootElementsRegistry = Collections.unmodifiableMap(staged);
+    }
+
+    /**
+     * Whether templates are minified when pre-processed, see {@link Initializer#withMinification()}.
+     * @return
+     */
+    public boolean isMinifyingOutput ()
+    {
+        return minifyOutput;
+    }
+
+    /**
+     * Whether the DOM of templates is released once they're pre-processed, see
+     * {@link Initializer#withDomRelease()}.
+     * @return
+     */
+    public boolean isReleasingDom ()
+    {
+        return releaseDom;
+    }
+
+    /**
+     * Gets the parser instance being used by this engine instance.
+     * @return
+     */
+    public TemplateParser getTemplateParser ()
+    {
+        return templateParser;
+    }
+
     /**
      * Gets the expression matcher instance being used by this engine instance.
      * @return
@@ -201,7 +462,15 @@ public class TemplatingEngine
      */
     public Set<String> getRegisteredTemplateNames ()
     {
-        return rootElementsRegistry.keySet();
+        if(lazyTemplates.isEmpty())
+        {
+            return rootElementsRegistry.keySet();
+        }
+
+        Set<String> names = new HashSet<>(rootElementsRegistry.keySet());
+        names.addAll(lazyTemplates.keySet());
+
+        return Collections.unmodifiableSet(names);
     }
 
     /**
@@ -211,6 +480,11 @@ public class TemplatingEngine
      */
     public Map<String,String> getTemplateMetaData (String qualifiedName)
     {
+        if(lazyTemplates.containsKey(qualifiedName))
+        {
+            lookupTemplate(qualifiedName);
+        }
+
         return rootElementsMetaData.get(qualifiedName);
     }
 
@@ -226,17 +500,170 @@ public class TemplatingEngine
             preprocessChanges();
         }
 
-        return rootElementsRegistry.get(qualifiedName);
+        return lookupTemplate(qualifiedName);
+    }
+
+    /**
+     * Gets the root element registered for the specified name, without triggering any pre-processing.
+     *
+     * Templates registered for lazy loading are parsed at this point, the first time they're looked up.
+     *
+     * @param qualifiedName
+     * @return
+     * @throws RenderingException If a template registered for lazy loading fails to load
+     */
+    public TemplateRootElement lookupTemplate (String qualifiedName)
+    {
+        final TemplateRootElement rootElement = rootElementsRegistry.get(qualifiedName);
+
+        if(rootElement != null || !lazyTemplates.containsKey(qualifiedName))
+        {
+            return rootElement;
+        }
+
+        return loadLazyTemplate(qualifiedName, null, null);
     }
 
     /**
-     * Checks if there is a template for the specified element type.
+     * Checks if there is a template for the specified element type, including templates registered for
+     * lazy loading that haven't been loaded yet.
      * @param qualifiedName
      * @return
      */
     public boolean hasTemplate (String qualifiedName)
     {
-        return rootElementsRegistry.containsKey(qualifiedName);
+        return rootElementsRegistry.containsKey(qualifiedName) || lazyTemplates.containsKey(qualifiedName);
+    }
+
+    /**
+     * Gets the paths of the variables a template reads from the scope it's rendered with, such as "user" or
+     * "user.permissions", including those read by every template it expands and by the expressions passed
+     * to them as attributes. Variables defined within the template, such as attributes or the items of
+     * foreach templates, aren't included.
+     *
+     * Paths are as they appear in expressions. Variables resolved through functions, e.g. {@code Get(user, key)},
+     * only report the variable itself.
+     *
+     * @param qualifiedName
+     * @return The paths, sorted, or null if there's no template with that name
+     */
+    public Set<String> getReferencedPaths (String qualifiedName)
+    {
+        final TemplateRootElement rootElement = (TemplateRootElement) getTemplate(qualifiedName);
+
+        return rootElement != null ? rootElement.getInstructionSet().getReferencedPaths() : null;
+    }
+
+    /**
+     * Gets the names of the variables a template reads from the scope it's rendered with, the first segment
+     * of each of the paths returned by {@link #getReferencedPaths(String)}.
+     *
+     * @param qualifiedName
+     * @return The names, sorted, or null if there's no template with that name
+     */
+    public Set<String> getReferencedVariables (String qualifiedName)
+    {
+        final Set<String> paths = getReferencedPaths(qualifiedName);
+
+        if(paths == null)
+        {
+            return null;
+        }
+
+        return Collections.unmodifiableSet(paths.stream()
+            .map(path -> path.contains(".") ? path.substring(0, path.indexOf('.')) : path)
+            .collect(Collectors.toCollection(() -> new TreeSet<String>())));
+    }
+
+    /**
+     * Whether templates found at build time are only parsed when first used, see
+     * {@link Initializer#withLazyLoading()}.
+     * @return
+     */
+    public boolean isLazyLoading ()
+    {
+        return lazyLoading;
+    }
+
+    /**
+     * Registers a template by name, to be loaded from the given source the first time it's used.
+     *
+     * @param qualifiedName
+     * @param source
+     */
+    void registerLazyTemplate (String qualifiedName, LazyTemplateSource source)
+    {
+        lazyTemplates.put(qualifiedName, source);
+    }
+
+    /**
+     * Parses a template registered for lazy loading and adds it to the registry, without pre-processing it.
+     * Its instruction set is prepared when first requested.
+     *
+     * If the template turns out to declare another name than the one it was registered with, it's added
+     * under the name it declares, as it would have been without lazy loading, and null is returned.
+     *
+     * @param qualifiedName
+     * @param staged The registry being staged by the publish call this happens within, if any
+     * @param settled When staging, collects the names whose pending entries the batch resolves
+     * @return The template, or null if there's no template with that name
+     */
+    private synchronized TemplateRootElement loadLazyTemplate (String qualifiedName, Map<String, TemplateRootElement> staged,
+                                                               Set<String> settled)
+    {
+        final LazyTemplateSource source = lazyTemplates.get(qualifiedName);
+
+        if(source == null)
+        {
+            // loaded meanwhile
+            return staged != null ? staged.get(qualifiedName) : rootElementsRegistry.get(qualifiedName);
+        }
+
+        final TemplateRootElement rootElement;
+
+        try
+        {
+            rootElement = source.load(this);
+        } catch(IOException | ParsingException e)
+        {
+            throw new RenderingException("Failed loading template " + qualifiedName + " from " + source.getLocation(), e);
+        }
+
+        final String declaredName = rootElement != null && rootElement.hasAttribute("name") ?
+            rootElement.getTemplateName() : null;
+
+        if(declaredName != null)
+        {
+            rootElement.setPreparedOnDemand(true);
+        }
+
+        if(staged != null)
+        {
+            // Becomes visible along with the rest of the batch
+            settled.add(qualifiedName);
+
+            if(declaredName != null)
+            {
+                staged.put(declaredName, rootElement);
+                settled.add(declaredName);
+            }
+        }
+        else
+        {
+            if(declaredName != null)
+            {
+                final Map<String, TemplateRootElement> registry = new HashMap<>(rootElementsRegistry);
+                registry.put(declaredName, rootElement);
+
+                rootElementsMetaData.put(declaredName, rootElement.getMetaData());
+                rootElementsRegistry = Collections.unmodifiableMap(registry);
+                lazyTemplates.remove(declaredName);
+            }
+
+            lazyTemplates.remove(qualifiedName);
+        }
+
+        return qualifiedName.equals(declaredName) ? rootElement : null;
     }
 
     /**
@@ -261,7 +688,180 @@ public class TemplatingEngine
      */
     public void render (ReadableElement root, Scope scope, OutputStream os) throws IOException
     {
-        new PreprocessedRenderer(this, ((TemplateRootElement) root).getInstructionSet(), new InternalScope(scope), os, Collections.emptyMap());
+        if(autoFlushThreshold > 0)
+        {
+            os = new AutoFlushOutputStream(os, autoFlushThreshold);
+        }
+
+        render((TemplateRootElement) root, scope, os, (InternalScope) null);
+    }
+
+    /**
+     * @param reusableScope A scope to be rebound to the given scope and used for the render, or null to
+     *                      create a new one
+     */
+    void render (TemplateRootElement rootElement, Scope scope, OutputStream os, InternalScope reusableScope)
+    {
+        final boolean flightRecording = FlightRecorderSupport.ENABLED && TemplateRenderEvent.isRecording();
+
+        if(renderListener == null && !flightRecording)
+        {
+            final InternalScope internalScope;
+
+            if(reusableScope != null)
+            {
+                reusableScope.rebind(scope);
+                internalScope = reusableScope;
+            }
+            else
+            {
+                internalScope = new InternalScope(scope, (RenderContext) null);
+            }
+
+            new PreprocessedRenderer(this, rootElement.getInstructionSet(), internalScope, os, Collections.emptyMap());
+            return;
+        }
+
+        final CountingOutputStream counter = new CountingOutputStream(os);
+        final RenderContext context = new RenderContext(renderListener, counter, flightRecording);
+        final TemplateRenderEvent event = flightRecording ? new TemplateRenderEvent() : null;
+        final long start = System.nanoTime();
+
+        if(event != null)
+        {
+            event.begin();
+        }
+
+        new PreprocessedRenderer(this, rootElement.getInstructionSet(), new InternalScope(scope, context), counter,
+            Collections.emptyMap(), context);
+
+        context.getListener().templateRendered(rootElement.getTemplateName(), false,
+            System.nanoTime() - start, counter.getCount());
+
+        if(event != null)
+        {
+            event.set(rootElement.getTemplateName(), false, counter.getCount(), context.getIterations());
+            event.commit();
+        }
+    }
+
+    /**
+     * Renders the specified template once for every given scope, spreading the renders across the given
+     * amount of threads, the calling one included.
+     *
+     * Scopes are only taken from the iterator as threads become free, so that they can be produced lazily
+     * without piling up. Each output is rendered into a buffer reused by the thread, and is then written
+     * to the stream opened for it by the sink factory, which is closed afterwards. The batch stops at the
+     * first failure, which is rethrown once all threads are done.
+     *
+     * As outputs are written whole, neither {@link Initializer#withAutoFlush(long)} nor t:flush elements
+     * apply to batch renders.
+     *
+     * @param root The template to render
+     * @param scopes The scopes to render the template with
+     * @param sinks Opens the stream the output of each scope is written to
+     * @param parallelism The amount of renders done at the same time
+     * @return The amount of items rendered
+     *
+     * @throws IOException
+     */
+    public long renderBatch (ReadableElement root, Iterator<? extends Scope> scopes, RenderSinkFactory sinks,
+                             int parallelism) throws IOException
+    {
+        if(parallelism < 1)
+        {
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+
+        return new BatchRenderer(this, (TemplateRootElement) root, scopes, sinks).run(parallelism);
+    }
+
+    /**
+     * Renders the specified template once for every scope of the given stream, see
+     * {@link #renderBatch(ReadableElement, Iterator, RenderSinkFactory, int)}.
+     *
+     * @param root The template to render
+     * @param scopes The scopes to render the template with
+     * @param sinks Opens the stream the output of each scope is written to
+     * @param parallelism The amount of renders done at the same time
+     * @return The amount of items rendered
+     *
+     * @throws IOException
+     */
+    public long renderBatch (ReadableElement root, Stream<? extends Scope> scopes, RenderSinkFactory sinks,
+                             int parallelism) throws IOException
+    {
+        return renderBatch(root, scopes.iterator(), sinks, parallelism);
+    }
+
+    /**
+     * Renders the specified template into the provided outputstream, computing a digest of the output as
+     * it's written, so that an entity tag is available without buffering the output.
+     *
+     * Templates with only static content aren't hashed at all, their result is computed once and reused.
+     *
+     * @param root The template to render
+     * @param scope The scope containing any data to be passed to the template
+     * @param os The outputstream in which the result will be written to
+     * @return The amount of bytes rendered and their digest
+     *
+     * @throws IOException
+     */
+    public RenderResult renderWithDigest (ReadableElement root, Scope scope, OutputStream os) throws IOException
+    {
+        final RenderResult staticResult = ((TemplateRootElement) root).getInstructionSet().getStaticResult();
+
+        if(staticResult != null)
+        {
+            render(root, scope, os);
+            return staticResult;
+        }
+
+        final DigestingOutputStream digesting = new DigestingOutputStream(os);
+        render(root, scope, digesting);
+
+        return new RenderResult(digesting.getCount(), digesting.getDigest());
+    }
+
+    /**
+     * Renders the specified template into the provided outputstream, compressed in the given format.
+     *
+     * The compressed data is finished once the template has been rendered, but the outputstream itself is
+     * left open. Any flush during the render, such as at t:flush elements, flushes the compressed data
+     * written so far as well.
+     *
+     * @param root The template to render
+     * @param scope The scope containing any data to be passed to the template
+     * @param os The outputstream in which the compressed result will be written to
+     * @param compression The format to compress the result in
+     *
+     * @throws IOException
+     */
+    public void render (ReadableElement root, Scope scope, OutputStream os, Compression compression) throws IOException
+    {
+        final byte[] dictionary = compression == Compression.DEFLATE_WITH_DICTIONARY ?
+            getCompressionDictionary(root) : null;
+
+        try(CompressingOutputStream cos = new CompressingOutputStream(os, compression, compressionLevel, dictionary))
+        {
+            render(root, scope, cos);
+        }
+    }
+
+    /**
+     * Gets the preset dictionary used when rendering the specified template with
+     * {@link Compression#DEFLATE_WITH_DICTIONARY}, which whoever decompresses the output needs as well,
+     * e.g. through {@link java.util.zip.Inflater#setDictionary(byte[])}.
+     *
+     * The dictionary is made of the static content of the template and of the templates it uses, and
+     * changes when any of them are reloaded.
+     *
+     * @param root
+     * @return
+     */
+    public byte[] getCompressionDictionary (ReadableElement root)
+    {
+        return ((TemplateRootElement) root).getInstructionSet().getCompressionDictionary();
     }
 
     /**
@@ -296,19 +896,31 @@ public class TemplatingEngine
     public static class Initializer
     {
         private final Map<Path, Boolean> searchDirectories;
-        private final Map<FileSystem, WatchService> watchServices;
-        private final Map<WatchKey, Path> watchKeyPaths;
+        private final List<ClassLoader> classpathIndexes;
         private final ExpressionMatcher expressionMatcher;
         private final FunctionCatalog functionCatalog;
         private BiConsumer<Path, LoaderException> hotloadErrorHandler;
+        private long hotloadDebounceMillis;
+        private long autoFlushThreshold;
+        private boolean minifyOutput;
+        private boolean releaseDom;
+        private boolean lazyLoading;
+        private int compressionLevel;
+        private RenderListener renderListener;
 
         Initializer ()
         {
-            searchDirectories = new HashMap<>();
-            watchServices = new HashMap<>();
-            watchKeyPaths = new HashMap<>();
+            searchDirectories = new LinkedHashMap<>();
+            classpathIndexes = new ArrayList<>();
             expressionMatcher = new ExpressionMatcher(functionCatalog = new FunctionCatalog());
             hotloadErrorHandler = (tplFile, e) -> {};
+            hotloadDebounceMillis = 200;
+            compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+            // Accessors generated for @TemplateModel classes
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            functionCatalog.getPropertyAccess().addServiceResolvers(classLoader != null ?
+                classLoader : TemplatingEngine.class.getClassLoader());
         }
 
         /**
@@ -336,6 +948,45 @@ public class TemplatingEngine
             return this;
         }
 
+        /**
+         * Registers a resolver for reading properties of objects referenced in templates, consulted before
+         * the built-in ways of reading properties and before resolvers registered previously.
+         *
+         * @param resolver
+         * @return
+         */
+        public Initializer withPropertyResolver (PropertyResolver resolver)
+        {
+            functionCatalog.getPropertyAccess().addResolver(resolver);
+            return this;
+        }
+
+        /**
+         * Loads the templates listed in every {@link TemplateIndex} found by the context class loader.
+         *
+         * Only the resources listed in the indexes are read, straight from the jars or directories that
+         * contain them, without scanning the class-path.
+         *
+         * @return
+         */
+        public Initializer withClasspathTemplates ()
+        {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            return withClasspathTemplates(classLoader != null ? classLoader : TemplatingEngine.class.getClassLoader());
+        }
+
+        /**
+         * Loads the templates listed in every {@link TemplateIndex} found by the given class loader.
+         *
+         * @param classLoader
+         * @return
+         */
+        public Initializer withClasspathTemplates (ClassLoader classLoader)
+        {
+            classpathIndexes.add(classLoader);
+            return this;
+        }
+
         /**
          * Adds a new search directory for template discovery.
          *
@@ -424,6 +1075,142 @@ public class TemplatingEngine
             return this;
         }
 
+        /**
+         * Sets for how long the hot-reload watchers wait for file changes to settle before reloading.
+         *
+         * Every change detected within this window, counted from the last one, is handled as a single
+         * batch, so that editors or deployments touching many files at once only cause one reload.
+         *
+         * @param milliseconds The debounce window, defaults to 200 milliseconds
+         * @return
+         */
+        public Initializer withHotloadDebounce (long milliseconds)
+        {
+            hotloadDebounceMillis = milliseconds;
+            return this;
+        }
+
+        /**
+         * Makes every render flush its output once the specified amount of bytes has been written.
+         *
+         * This allows the beginning of a document, such as the head section of a layout, to reach the
+         * client while the rest of it is still being rendered. Flush points can also be placed
+         * explicitly in templates with the t:flush element.
+         *
+         * @param bytes Amount of bytes after which to flush, 0 disables automatic flushing
+         * @return
+         */
+        public Initializer withAutoFlush (long bytes)
+        {
+            autoFlushThreshold = bytes;
+            return this;
+        }
+
+        /**
+         * Minifies the static content of templates when they are pre-processed: runs of whitespace are
+         * collapsed into a single space, whitespace-only text spanning multiple lines, such as the
+         * indentation between elements, is dropped and HTML comments are removed, except for conditional
+         * comments. The content of pre, textarea, script, style and text-content elements is left untouched.
+         *
+         * Since this happens once per template, renders don't pay anything for it.
+         *
+         * @return
+         */
+        public Initializer withMinification ()
+        {
+            minifyOutput = true;
+            return this;
+        }
+
+        /**
+         * Defers parsing templates found in search directories that aren't watched, or listed in class-path
+         * indexes, until they're first used. When the engine is built, template files are only read as far as
+         * their root element, to find the name of the template.
+         *
+         * Templates are then parsed when first looked up, including when another template using them is
+         * pre-processed, and pre-processed when first rendered. Errors in a template only surface at that
+         * point, as a RenderingException.
+         *
+         * @return
+         */
+        public Initializer withLazyLoading ()
+        {
+            lazyLoading = true;
+            return this;
+        }
+
+        /**
+         * Releases the elements and text of each template once it has been pre-processed, since renders only
+         * need the resulting instructions. Only the name, slots and meta-data of templates are kept, along
+         * with their declaration in text form, which is parsed again whenever a template has to be
+         * pre-processed again, e.g. because a template it uses was reloaded.
+         *
+         * Templates returned by the engine then have no children, so this shouldn't be used when anything
+         * reads the structure of templates after registering them.
+         *
+         * @return
+         */
+        public Initializer withDomRelease ()
+        {
+            releaseDom = true;
+            return this;
+        }
+
+        /**
+         * Sets the rules for evaluating conditions, {@link Truthiness#CLASSIC} by default. With
+         * {@link Truthiness#EXTENDED}, values such as empty collections or zero count as false, the If function
+         * accepts conditions of any type and true, false, null and numbers are always literals.
+         *
+         * @param truthiness
+         * @return
+         */
+        public Initializer withTruthiness (Truthiness truthiness)
+        {
+            expressionMatcher.setTruthiness(truthiness);
+
+            // Unless a custom If function replaced the built-in one
+            if(functionCatalog.getHandler("If") instanceof IfFunction)
+            {
+                functionCatalog.registerHandler(new IfFunction(truthiness));
+            }
+
+            return this;
+        }
+
+        /**
+         * Sets the level used when rendering with compression, see
+         * {@link TemplatingEngine#render(ReadableElement, Scope, OutputStream, Compression)}.
+         *
+         * @param level From 0 (no compression) to 9 (best compression), or -1 for the default level
+         * @return
+         */
+        public Initializer withCompressionLevel (int level)
+        {
+            if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            {
+                throw new IllegalArgumentException("Invalid compression level: " + level);
+            }
+
+            compressionLevel = level;
+            return this;
+        }
+
+        /**
+         * Registers a listener to be notified about the work done while rendering, such as how long each
+         * template takes to render and how many expressions are evaluated.
+         *
+         * {@link pt.neticle.ark.templating.metrics.RenderMetrics} can be used to aggregate these
+         * notifications. When no listener is registered, renders don't do any of this bookkeeping.
+         *
+         * @param listener
+         * @return
+         */
+        public Initializer withRenderListener (RenderListener listener)
+        {
+            renderListener = listener;
+            return this;
+        }
+
         /**
          * Builds a TemplatingEngine instance and adds any templates found in the specified
          * search directories.
@@ -433,31 +1220,51 @@ public class TemplatingEngine
          */
         public TemplatingEngine build () throws IOException, LoaderException
         {
+            functionCatalog.freeze();
+
             TemplatingEngine engine = new TemplatingEngine(new DefaultTemplateParser(), expressionMatcher);
+            TemplateReloader reloader = null;
+
+            engine.autoFlushThreshold = autoFlushThreshold;
+            engine.minifyOutput = minifyOutput;
+            engine.releaseDom = releaseDom;
+            engine.lazyLoading = lazyLoading;
+            engine.compressionLevel = compressionLevel;
+            engine.renderListener = renderListener;
+
+            for(ClassLoader classLoader : classpathIndexes)
+            {
+                TemplateIndex.load(engine, classLoader);
+            }
 
             for(Map.Entry<Path, Boolean> entry : searchDirectories.entrySet())
             {
-                handleFileObject(entry.getKey(), engine, entry.getValue());
+                if(entry.getValue())
+                {
+                    if(reloader == null)
+                    {
+                        reloader = new TemplateReloader(engine, hotloadDebounceMillis, hotloadErrorHandler);
+                    }
+
+                    reloader.watch(entry.getKey());
+                    continue;
+                }
+
+                handleFileObject(entry.getKey(), engine);
             }
 
             engine.preprocessChanges();
 
-            ExecutorService executor = Executors.newCachedThreadPool();
-            for(WatchService s : watchServices.values())
+            if(reloader != null)
             {
-                executor.submit(() -> handleWatchService(s, engine));
+                engine.reloader = reloader;
+                reloader.start();
             }
-            executor.shutdown();
 
             return engine;
         }
 
-        private WatchService getWatchService (FileSystem fs) throws IOException
-        {
-            return watchServices.computeIfAbsent(fs, CheckedFunction.rethrow((_fs) -> _fs.newWatchService()));
-        }
-
-        private void handleFileObject (Path file, TemplatingEngine engine, boolean watch) throws IOException, LoaderException
+        private void handleFileObject (Path file, TemplatingEngine engine) throws IOException, LoaderException
         {
             if(!Files.exists(file))
             {
@@ -466,83 +1273,37 @@ public class TemplatingEngine
 
             if(Files.isDirectory(file))
             {
-                if(watch)
-                {
-                    WatchKey wk = file.register(getWatchService(file.getFileSystem()),
-                        StandardWatchEventKinds.ENTRY_CREATE,
-                        StandardWatchEventKinds.ENTRY_DELETE,
-                        StandardWatchEventKinds.ENTRY_MODIFY);
-
-                    watchKeyPaths.put(wk, file);
-                }
-
                 for(Path subdir : Files.newDirectoryStream(file, (f) -> Files.isDirectory(f)))
                 {
-                    handleFileObject(subdir, engine, watch);
+                    handleFileObject(subdir, engine);
                 }
 
                 for(Path tplFile : Files.newDirectoryStream(file, "*.html"))
                 {
-                    handleFileObject(tplFile, engine, false);
+                    handleFileObject(tplFile, engine);
                 }
 
                 return;
             }
 
-            try
-            {
-                engine.registerTemplate(Files.newInputStream(file));
-            } catch(ParsingException e)
-            {
-                throw new LoaderException(file, e);
-            }
-        }
-
-        private void handleWatchService (WatchService service, TemplatingEngine engine)
-        {
-            for(;;)
+            if(lazyLoading)
             {
-                WatchKey key;
+                String name = LazyTemplateSource.scanName(file);
 
-                try
-                {
-                    key = service.take();
-                } catch (InterruptedException e)
+                if(name != null)
                 {
+                    engine.registerLazyTemplate(name,
+                        new LazyTemplateSource(file.toString(), () -> Files.newInputStream(file), engine.templateParser));
                     return;
                 }
+            }
 
-                Path base = watchKeyPaths.get(key);
-
-                if(base != null)
-                {
-                    for(WatchEvent<?> ev : key.pollEvents())
-                    {
-                        if(ev.context() instanceof Path &&
-                            ev.kind() == StandardWatchEventKinds.ENTRY_MODIFY &&
-                            !Files.isDirectory((Path) ev.context()))
-                        {
-                            try
-                            {
-                                try {
-                                    handleFileObject(base.resolve(((Path) ev.context())), engine, false);
-                                } catch(Exception e)
-                                {
-                                    if(e instanceof LoaderException)
-                                    {
-                                        throw (LoaderException) e;
-                                    }
-
-                                    throw new LoaderException((Path) ev.context(), e);
-                                }
-                            } catch(LoaderException e)
-                            {
-                                hotloadErrorHandler.accept((Path)ev.context(), e);
-                            }
-                        }
-                    }
-                }
-                key.reset();
+            try(InputStream is = Files.newInputStream(file))
+            {
+                engine.registerTemplate(is);
+            } catch(ParsingException e)
+            {
+                throw new LoaderException(file, e);
             }
         }
     }
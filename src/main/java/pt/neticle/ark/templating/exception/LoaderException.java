@@ -15,4 +15,16 @@ public class LoaderException extends Exception
             cause.getLine() + "," + cause.getColumn() + ", " +
             cause.getMessage(), cause);
     }
+
+    public LoaderException (String resource, Throwable cause)
+    {
+        super("Failed loading template resource: " + resource, cause);
+    }
+
+    public LoaderException (String resource, ParsingException cause)
+    {
+        super("Failed parsing template resource: " + resource + ":" +
+            cause.getLine() + "," + cause.getColumn() + ", " +
+            cause.getMessage(), cause);
+    }
 }
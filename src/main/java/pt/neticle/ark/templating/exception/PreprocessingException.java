@@ -0,0 +1,24 @@
+package pt.neticle.ark.templating.exception;
+
+/**
+ * Thrown when a template can't be pre-processed, identifying the element that failed.
+ */
+public class PreprocessingException extends RuntimeException
+{
+    private final String element;
+
+    public PreprocessingException (String element, Throwable cause)
+    {
+        super("<" + element + ">: " + (cause.getMessage() != null ? cause.getMessage() : cause.toString()), cause);
+
+        this.element = element;
+    }
+
+    /**
+     * @return The tag name of the element that failed to pre-process
+     */
+    public String getElement ()
+    {
+        return element;
+    }
+}
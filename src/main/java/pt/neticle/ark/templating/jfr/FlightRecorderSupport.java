@@ -0,0 +1,34 @@
+package pt.neticle.ark.templating.jfr;
+
+/**
+ * Tells whether the Java Flight Recorder events of this library can be used.
+ *
+ * The event classes depend on the jdk.jfr API, which isn't present in every runtime, so they must
+ * only be referenced after checking {@link #ENABLED}. The events can also be turned off explicitly by
+ * setting the "ark.templating.jfr" system property to false.
+ */
+public final class FlightRecorderSupport
+{
+    public static final boolean ENABLED = detect();
+
+    private FlightRecorderSupport ()
+    {
+    }
+
+    private static boolean detect ()
+    {
+        if(!Boolean.parseBoolean(System.getProperty("ark.templating.jfr", "true")))
+        {
+            return false;
+        }
+
+        try
+        {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderSupport.class.getClassLoader());
+            return true;
+        } catch(ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package pt.neticle.ark.templating.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Emitted for every template declaration parsed.
+ */
+@Name("pt.neticle.ark.templating.Parse")
+@Label("Template Parse")
+@Category("Ark Templating")
+@Description("Parsing of a template declaration into its element tree")
+@StackTrace(false)
+public class TemplateParseEvent extends Event
+{
+    @Label("Template")
+    private String templateName;
+
+    @Label("Characters")
+    private long characters;
+
+    public void set (String templateName, long characters)
+    {
+        this.templateName = templateName;
+        this.characters = characters;
+    }
+}
@@ -0,0 +1,31 @@
+package pt.neticle.ark.templating.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Emitted for every instruction set built for a template.
+ */
+@Name("pt.neticle.ark.templating.Prepare")
+@Label("Template Prepare")
+@Category("Ark Templating")
+@Description("Pre-processing of a template into the instruction set used to render it")
+@StackTrace(false)
+public class TemplatePrepareEvent extends Event
+{
+    @Label("Template")
+    private String templateName;
+
+    @Label("Instructions")
+    private long instructions;
+
+    @Label("Static Content")
+    @DataAmount
+    private long staticBytes;
+
+    public void set (String templateName, long instructions, long staticBytes)
+    {
+        this.templateName = templateName;
+        this.instructions = instructions;
+        this.staticBytes = staticBytes;
+    }
+}
@@ -0,0 +1,30 @@
+package pt.neticle.ark.templating.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Emitted for every batch of changes handled by the hot-reload watchers.
+ */
+@Name("pt.neticle.ark.templating.Reload")
+@Label("Template Reload")
+@Category("Ark Templating")
+@Description("A batch of template file changes being reloaded")
+@StackTrace(false)
+public class TemplateReloadEvent extends Event
+{
+    @Label("Changed Paths")
+    private long changedPaths;
+
+    @Label("Reloaded Templates")
+    private long reloadedTemplates;
+
+    @Label("Removed Templates")
+    private long removedTemplates;
+
+    public void set (long changedPaths, long reloadedTemplates, long removedTemplates)
+    {
+        this.changedPaths = changedPaths;
+        this.reloadedTemplates = reloadedTemplates;
+        this.removedTemplates = removedTemplates;
+    }
+}
@@ -0,0 +1,49 @@
+package pt.neticle.ark.templating.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Emitted for every template rendered, both for the template passed to the engine and for each
+ * template expanded from within another one.
+ */
+@Name("pt.neticle.ark.templating.Render")
+@Label("Template Render")
+@Category("Ark Templating")
+@Description("Rendering of a template, including any templates nested in it")
+@StackTrace(false)
+public class TemplateRenderEvent extends Event
+{
+    private static final EventType type = EventType.getEventType(TemplateRenderEvent.class);
+
+    @Label("Template")
+    private String templateName;
+
+    @Label("Nested")
+    private boolean nested;
+
+    @Label("Bytes Written")
+    @DataAmount
+    private long bytes;
+
+    @Label("Foreach Iterations")
+    private long iterations;
+
+    public void set (String templateName, boolean nested, long bytes, long iterations)
+    {
+        this.templateName = templateName;
+        this.nested = nested;
+        this.bytes = bytes;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Checks if any recording is currently interested in this event, so that renders can skip keeping
+     * track of the data it carries otherwise.
+     *
+     * @return
+     */
+    public static boolean isRecording ()
+    {
+        return type.isEnabled();
+    }
+}
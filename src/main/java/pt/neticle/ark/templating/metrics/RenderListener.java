@@ -0,0 +1,41 @@
+package pt.neticle.ark.templating.metrics;
+
+/**
+ * Receives notifications about the work done while rendering templates.
+ *
+ * A listener is registered through {@link pt.neticle.ark.templating.TemplatingEngine.Initializer#withRenderListener},
+ * engines without one skip all of the bookkeeping required to produce these notifications.
+ *
+ * Listeners are invoked from the rendering threads, so implementations must be thread-safe and
+ * should return as quickly as possible.
+ */
+public interface RenderListener
+{
+    /**
+     * Invoked once a template finished rendering.
+     *
+     * @param templateName The qualified name of the template
+     * @param nested False for the template passed to the engine's render method, true for templates
+     *               expanded from within other templates
+     * @param durationNanos Time spent rendering the template, including any templates nested in it
+     * @param bytesWritten Bytes written while rendering the template, including any templates nested in it
+     */
+    default void templateRendered (String templateName, boolean nested, long durationNanos, long bytesWritten)
+    {
+    }
+
+    /**
+     * Invoked every time an expression is evaluated.
+     */
+    default void expressionEvaluated ()
+    {
+    }
+
+    /**
+     * Invoked every time the result of an expression is taken from a scope's memo instead of being
+     * evaluated again.
+     */
+    default void expressionMemoHit ()
+    {
+    }
+}
@@ -0,0 +1,168 @@
+package pt.neticle.ark.templating.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A render listener that aggregates everything it is notified of into striped counters, both
+ * globally and per template.
+ *
+ * The aggregates can be read directly or through JMX, after calling {@link #registerMBean()}.
+ */
+public class RenderMetrics implements RenderListener, RenderMetricsMXBean
+{
+    private final LongAdder renderCount = new LongAdder();
+    private final LongAdder nestedExpansionCount = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder expressionEvaluations = new LongAdder();
+    private final LongAdder memoHits = new LongAdder();
+    private final Map<String, TemplateCounters> templates = new ConcurrentHashMap<>();
+
+    @Override
+    public void templateRendered (String templateName, boolean nested, long durationNanos, long bytesWritten)
+    {
+        TemplateCounters counters = templates.get(templateName);
+
+        if(counters == null)
+        {
+            counters = templates.computeIfAbsent(templateName, (k) -> new TemplateCounters());
+        }
+
+        counters.count.increment();
+        counters.totalNanos.add(durationNanos);
+        counters.maxNanos.accumulate(durationNanos);
+        counters.bytesWritten.add(bytesWritten);
+
+        if(nested)
+        {
+            counters.nestedCount.increment();
+            nestedExpansionCount.increment();
+        }
+        else
+        {
+            // Nested templates write to the same output, so only top-level renders count towards the total
+            renderCount.increment();
+            this.bytesWritten.add(bytesWritten);
+        }
+    }
+
+    @Override
+    public void expressionEvaluated ()
+    {
+        expressionEvaluations.increment();
+    }
+
+    @Override
+    public void expressionMemoHit ()
+    {
+        memoHits.increment();
+    }
+
+    @Override
+    public long getRenderCount ()
+    {
+        return renderCount.sum();
+    }
+
+    @Override
+    public long getNestedExpansionCount ()
+    {
+        return nestedExpansionCount.sum();
+    }
+
+    @Override
+    public long getBytesWritten ()
+    {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getExpressionEvaluations ()
+    {
+        return expressionEvaluations.sum();
+    }
+
+    @Override
+    public long getMemoHits ()
+    {
+        return memoHits.sum();
+    }
+
+    @Override
+    public Map<String, TemplateStatistics> getTemplateStatistics ()
+    {
+        Map<String, TemplateStatistics> result = new HashMap<>();
+
+        templates.forEach((name, c) -> result.put(name, new TemplateStatistics(
+            c.count.sum(), c.nestedCount.sum(), c.totalNanos.sum(), c.maxNanos.get(), c.bytesWritten.sum())));
+
+        return result;
+    }
+
+    /**
+     * Gets the metrics collected for a single template.
+     *
+     * @param templateName
+     * @return The statistics or null if the template wasn't rendered yet
+     */
+    public TemplateStatistics getTemplateStatistics (String templateName)
+    {
+        TemplateCounters c = templates.get(templateName);
+
+        return c == null ? null : new TemplateStatistics(
+            c.count.sum(), c.nestedCount.sum(), c.totalNanos.sum(), c.maxNanos.get(), c.bytesWritten.sum());
+    }
+
+    @Override
+    public void reset ()
+    {
+        renderCount.reset();
+        nestedExpansionCount.reset();
+        bytesWritten.reset();
+        expressionEvaluations.reset();
+        memoHits.reset();
+        templates.clear();
+    }
+
+    /**
+     * Registers this instance with the platform MBean server, under the name
+     * "pt.neticle.ark.templating:type=RenderMetrics".
+     *
+     * @return The name the instance was registered with
+     * @throws JMException
+     */
+    public ObjectName registerMBean () throws JMException
+    {
+        return registerMBean(new ObjectName("pt.neticle.ark.templating:type=RenderMetrics"));
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under the specified name.
+     *
+     * @param name
+     * @return The name the instance was registered with
+     * @throws JMException
+     */
+    public ObjectName registerMBean (ObjectName name) throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        return server.registerMBean(this, name).getObjectName();
+    }
+
+    private static final class TemplateCounters
+    {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nestedCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder bytesWritten = new LongAdder();
+    }
+}
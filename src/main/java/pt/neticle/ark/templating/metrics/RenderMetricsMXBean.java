@@ -0,0 +1,23 @@
+package pt.neticle.ark.templating.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing the aggregates collected by {@link RenderMetrics}.
+ */
+public interface RenderMetricsMXBean
+{
+    long getRenderCount ();
+
+    long getNestedExpansionCount ();
+
+    long getBytesWritten ();
+
+    long getExpressionEvaluations ();
+
+    long getMemoHits ();
+
+    Map<String, TemplateStatistics> getTemplateStatistics ();
+
+    void reset ();
+}
@@ -0,0 +1,58 @@
+package pt.neticle.ark.templating.metrics;
+
+/**
+ * A snapshot of the metrics collected for a single template.
+ */
+public final class TemplateStatistics
+{
+    private final long renderCount;
+    private final long nestedCount;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long bytesWritten;
+
+    public TemplateStatistics (long renderCount, long nestedCount, long totalNanos, long maxNanos, long bytesWritten)
+    {
+        this.renderCount = renderCount;
+        this.nestedCount = nestedCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * @return How many times the template was rendered, both at the top-level and nested
+     */
+    public long getRenderCount ()
+    {
+        return renderCount;
+    }
+
+    /**
+     * @return How many times the template was expanded from within another template
+     */
+    public long getNestedCount ()
+    {
+        return nestedCount;
+    }
+
+    public long getTotalNanos ()
+    {
+        return totalNanos;
+    }
+
+    public long getMaxNanos ()
+    {
+        return maxNanos;
+    }
+
+    public long getAverageNanos ()
+    {
+        return renderCount > 0 ? totalNanos / renderCount : 0;
+    }
+
+    public long getBytesWritten ()
+    {
+        return bytesWritten;
+    }
+}
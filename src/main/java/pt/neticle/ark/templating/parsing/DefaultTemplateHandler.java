@@ -44,7 +44,7 @@ public class DefaultTemplateHandler implements TemplateHandler
                 currentElement.setAttribute(attr.getKey(), rootElement.createText(attr.getValue()));
             } catch(ParseException e)
             {
-                throw new SanityException("Mal-formed expression", e);
+                throw new SanityException("Mal-formed expression: " + e.getMessage(), e);
             }
         }
 
@@ -66,7 +66,7 @@ public class DefaultTemplateHandler implements TemplateHandler
                 currentElement.addText(rootElement.createText(text));
             } catch(ParseException e)
             {
-                throw new SanityException("Mal-formed expression", e);
+                throw new SanityException("Mal-formed expression: " + e.getMessage(), e);
             }
         }
     }
@@ -81,7 +81,11 @@ public class DefaultTemplateHandler implements TemplateHandler
                 " while closing " + currentElement.getTagName() + " element."));
         }
 
-        currentElement.removeAttribute("text-content");
+        if(currentElement.hasAttribute("text-content"))
+        {
+            currentElement.setTextContent(true);
+            currentElement.removeAttribute("text-content");
+        }
 
         rootElement.elementReady(currentElement);
         currentElement = currentElement.getParent();
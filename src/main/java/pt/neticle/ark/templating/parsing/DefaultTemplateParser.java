@@ -2,6 +2,8 @@ package pt.neticle.ark.templating.parsing;
 
 import pt.neticle.ark.templating.exception.ParsingException;
 import pt.neticle.ark.templating.exception.SanityException;
+import pt.neticle.ark.templating.jfr.FlightRecorderSupport;
+import pt.neticle.ark.templating.jfr.TemplateParseEvent;
 import pt.neticle.ark.templating.structure.TemplateRootElement;
 
 import java.io.IOException;
@@ -43,13 +45,42 @@ public class DefaultTemplateParser implements TemplateParser
     public TemplateRootElement parse (TemplateRootElement provided, InputStream is) throws ParsingException, IOException
     {
         DefaultTemplateHandler handler = new DefaultTemplateHandler(provided);
+        TemplateParseEvent event = FlightRecorderSupport.ENABLED ? new TemplateParseEvent() : null;
 
-        parseFromReader(new InputStreamReader(is, StandardCharsets.UTF_8), handler);
+        if(event != null)
+        {
+            event.begin();
+        }
+
+        int characters = parseFromReader(new InputStreamReader(is, StandardCharsets.UTF_8), handler);
+
+        if(event != null && event.shouldCommit())
+        {
+            event.set(provided.hasAttribute("name") ? provided.getTemplateName() : null, characters);
+            event.commit();
+        }
 
         return provided;
     }
 
-    private void parseFromReader (InputStreamReader reader, TemplateHandler handler) throws IOException, ParsingException
+    /**
+     * Parses a template declaration, passing the elements and text found to the given handler instead of
+     * building a template out of them.
+     *
+     * @param is An input stream containing the template declaration in text format
+     * @param handler The handler to pass the parsed content to
+     * @throws ParsingException Thrown for any errors during the parsing process
+     * @throws IOException Thrown for any errors reading from the provided stream
+     */
+    public void parse (InputStream is, TemplateHandler handler) throws ParsingException, IOException
+    {
+        parseFromReader(new InputStreamReader(is, StandardCharsets.UTF_8), handler);
+    }
+
+    /**
+     * @return The amount of characters read
+     */
+    private int parseFromReader (InputStreamReader reader, TemplateHandler handler) throws IOException, ParsingException
     {
         TemplateParserContext ctx = new TemplateParserContext();
         int ci, index = -1, line = 1, column = 0;
@@ -88,6 +119,8 @@ public class DefaultTemplateParser implements TemplateParser
         {
             throw new ParsingException("Parsing error: " + e.getMessage(), e, index, line, column);
         }
+
+        return index + 1;
     }
 
     /**
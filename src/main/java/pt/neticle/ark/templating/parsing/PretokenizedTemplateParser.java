@@ -0,0 +1,197 @@
+package pt.neticle.ark.templating.parsing;
+
+import pt.neticle.ark.templating.exception.ParsingException;
+import pt.neticle.ark.templating.exception.SanityException;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Loads templates pre-tokenized at build time, e.g. by the TemplatePretokenizer.
+ *
+ * A pre-tokenized template is the sequence of elements and text the DefaultTemplateParser found in its
+ * declaration, recorded in a binary form. Loading one replays that sequence into a DefaultTemplateHandler,
+ * which builds the same template the declaration would, without going through the declaration's text.
+ *
+ * This only saves tokenizing and checking the markup. The expressions within the template are still parsed
+ * as it's loaded, and the template is still pre-processed by the engine, as with a declaration in text form.
+ */
+public class PretokenizedTemplateParser implements TemplateParser
+{
+    /**
+     * The extension of pre-tokenized template files.
+     */
+    public static final String EXTENSION = ".arkt";
+
+    private static final int magic = 0x41524b54; // ARKT
+    private static final int version = 1;
+
+    private static final byte endOfTemplate = 0;
+    private static final byte startElement = 1;
+    private static final byte endElement = 2;
+    private static final byte textNode = 3;
+
+    @Override
+    public TemplateRootElement parse (TemplateRootElement provided, InputStream is) throws ParsingException, IOException
+    {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        final TemplateHandler handler = new DefaultTemplateHandler(provided);
+
+        if(in.readInt() != magic || in.readUnsignedShort() != version)
+        {
+            throw new ParsingException("Not a pre-tokenized template, or pre-tokenized by an incompatible version", 0, 0, 0);
+        }
+
+        int events = 0;
+
+        try
+        {
+            for(byte event = in.readByte(); event != endOfTemplate; event = in.readByte(), events++)
+            {
+                switch(event)
+                {
+                    case startElement:
+                        String name = readString(in);
+                        int count = in.readInt();
+                        Map<String, String> attributes = new LinkedHashMap<>();
+
+                        for(int i = 0; i < count; i++)
+                        {
+                            attributes.put(readString(in), readString(in));
+                        }
+
+                        handler.startElement(name, attributes);
+                        break;
+
+                    case endElement:
+                        handler.endElement(readString(in));
+                        break;
+
+                    case textNode:
+                        handler.textNode(readString(in));
+                        break;
+
+                    default:
+                        throw new ParsingException("Corrupted pre-tokenized template", events, 0, 0);
+                }
+            }
+        } catch(SanityException e)
+        {
+            throw new ParsingException("Parsing error: " + e.getMessage(), e, events, 0, 0);
+        }
+
+        return provided;
+    }
+
+    /**
+     * Parses a template declaration into the given root element, as the DefaultTemplateParser does, and
+     * records its content in the pre-tokenized form.
+     *
+     * @param provided A blank root element to be populated
+     * @param is An input stream containing the template declaration in text format
+     * @return The pre-tokenized template
+     * @throws ParsingException Thrown for any errors during the parsing process
+     * @throws IOException Thrown for any errors reading from the provided stream
+     */
+    public static byte[] pretokenize (TemplateRootElement provided, InputStream is) throws ParsingException, IOException
+    {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+
+        out.writeInt(magic);
+        out.writeShort(version);
+
+        new DefaultTemplateParser().parse(is, new Recorder(new DefaultTemplateHandler(provided), out));
+
+        out.writeByte(endOfTemplate);
+        out.flush();
+
+        return baos.toByteArray();
+    }
+
+    private static String readString (DataInputStream in) throws IOException
+    {
+        final byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString (DataOutputStream out, String s) throws IOException
+    {
+        final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /**
+     * Records every event before passing it on to the actual handler.
+     */
+    private static class Recorder implements TemplateHandler
+    {
+        private final TemplateHandler handler;
+        private final DataOutputStream out;
+
+        Recorder (TemplateHandler handler, DataOutputStream out)
+        {
+            this.handler = handler;
+            this.out = out;
+        }
+
+        @Override
+        public boolean startElement (String qName, Map<String, String> attributes) throws SanityException
+        {
+            try
+            {
+                out.writeByte(startElement);
+                writeString(out, qName);
+                out.writeInt(attributes.size());
+
+                for(Map.Entry<String, String> attribute : attributes.entrySet())
+                {
+                    writeString(out, attribute.getKey());
+                    writeString(out, attribute.getValue());
+                }
+            } catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+
+            return handler.startElement(qName, attributes);
+        }
+
+        @Override
+        public void textNode (String text) throws SanityException
+        {
+            try
+            {
+                out.writeByte(textNode);
+                writeString(out, text);
+            } catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+
+            handler.textNode(text);
+        }
+
+        @Override
+        public void endElement (String qName) throws SanityException
+        {
+            try
+            {
+                out.writeByte(endElement);
+                writeString(out, qName);
+            } catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+
+            handler.endElement(qName);
+        }
+    }
+}
@@ -6,12 +6,20 @@ package pt.neticle.ark.templating.processing;
 public class ExpandSlotInstruction extends Instruction
 {
     private final String slotName;
+    private final String slotKey;
 
     ExpandSlotInstruction (String slotName)
     {
         super(Type.EXPAND_SLOT);
 
         this.slotName = slotName;
+        this.slotKey = slotName != null ? slotName : "@unassigned";
+    }
+
+    @Override
+    Instruction copy ()
+    {
+        return new ExpandSlotInstruction(slotName);
     }
 
     public String getSlotName ()
@@ -19,6 +27,15 @@ public class ExpandSlotInstruction extends Instruction
         return slotName;
     }
 
+    /**
+     * @return The key of the slotted content in the slot members of a template expansion, "@unassigned"
+     * for the unnamed slot
+     */
+    public String getSlotKey ()
+    {
+        return slotKey;
+    }
+
     public boolean isUnassignedSlot ()
     {
         return slotName == null;
@@ -1,7 +1,10 @@
 package pt.neticle.ark.templating.processing;
 
 import pt.neticle.ark.templating.structure.TemplateExpressionText;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
 
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -19,39 +22,147 @@ import java.util.stream.Collectors;
  *    on how to render the slotted content.
  *  - A map containing attributes passed on declaration. Each attribute is mapped to a list of
  *    segments because attribute values may be composed of both plain-text and expressions.
+ *  - The template being expanded, as resolved when pre-processing, and the instruction set it's linked
+ *    to, so that rendering doesn't have to look it up by name.
  */
 public class ExpandTemplateInstruction extends Instruction
 {
     private final String templateName;
     private final Map<String, List<Instruction>> preprocessedSlotMembers;
     private final Map<String, List<TemplateExpressionText.Segment>> attributes;
+    private final TemplateRootElement template;
+    private volatile PreprocessedInstructionSet linkedInstructionSet;
+
+    /**
+     * The members of each slot compiled into a single program, when first requested.
+     */
+    private volatile Map<String, Program> slotPrograms;
+
+    /**
+     * The output of this expansion if it's the same for every render, resolved when first requested along
+     * with the set it was linked to, so that output resolved from a previous link is never kept.
+     */
+    private volatile StaticOutput staticOutput;
+
+    private static final class StaticOutput
+    {
+        private final PreprocessedInstructionSet linkedInstructionSet;
+        private final byte[] bytes;
+
+        private StaticOutput (PreprocessedInstructionSet linkedInstructionSet, byte[] bytes)
+        {
+            this.linkedInstructionSet = linkedInstructionSet;
+            this.bytes = bytes;
+        }
+    }
 
     ExpandTemplateInstruction (String templateName,
+                                      TemplateRootElement template,
                                       Map<String, List<Instruction>> preprocessedSlotMembers,
                                       Map<String, List<TemplateExpressionText.Segment>> attributes)
     {
         super(Type.EXPAND_TEMPLATE);
 
         this.templateName = templateName;
+        this.template = template;
         this.preprocessedSlotMembers = preprocessedSlotMembers;
         this.attributes = attributes;
     }
 
+    @Override
+    Instruction copy ()
+    {
+        Map<String, List<Instruction>> members = new HashMap<>();
+
+        for(Map.Entry<String, List<Instruction>> e : preprocessedSlotMembers.entrySet())
+        {
+            members.put(e.getKey(), e.getValue().stream()
+                .map(Instruction::copyChain)
+                .collect(Collectors.toList()));
+        }
+
+        return new ExpandTemplateInstruction(templateName, template, members, attributes);
+    }
+
     public String getTemplateName ()
     {
         return templateName;
     }
 
+    /**
+     * @return The template being expanded, as resolved when pre-processing, or null for inner-templates
+     */
+    public TemplateRootElement getTemplate ()
+    {
+        return template;
+    }
+
+    /**
+     * @return The instruction set of the template being expanded, or null if it wasn't linked yet
+     */
+    public PreprocessedInstructionSet getLinkedInstructionSet ()
+    {
+        return linkedInstructionSet;
+    }
+
+    /**
+     * Links this expansion to the instruction set of its template.
+     *
+     * @param instructionSet
+     */
+    public void link (PreprocessedInstructionSet instructionSet)
+    {
+        this.linkedInstructionSet = instructionSet;
+    }
+
     public Map<String, List<Instruction>> getPreprocessedSlotMembers ()
     {
         return preprocessedSlotMembers;
     }
 
+    /**
+     * @return The program of the content slotted into each slot
+     */
+    public Map<String, Program> getSlotPrograms ()
+    {
+        Map<String, Program> result = slotPrograms;
+
+        if(result == null)
+        {
+            slotPrograms = result = Program.compileSlots(preprocessedSlotMembers);
+        }
+
+        return result;
+    }
+
     public Map<String, List<TemplateExpressionText.Segment>> getAttributes ()
     {
         return attributes;
     }
 
+    /**
+     * Gets the output of this expansion, if the template, the content slotted into it and every template
+     * expanded within them only have static content.
+     *
+     * @return The UTF-8 encoded output, or null if it depends on the scope or on the slots of the template
+     * declaring this expansion
+     */
+    public byte[] getStaticOutput ()
+    {
+        final PreprocessedInstructionSet linked = linkedInstructionSet;
+        StaticOutput result = staticOutput;
+
+        if(result == null || result.linkedInstructionSet != linked)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            staticOutput = result = new StaticOutput(linked,
+                PreprocessedInstructionSet.collectStaticOutput(this, null, out, 0) ? out.toByteArray() : null);
+        }
+
+        return result.bytes;
+    }
+
     @Override
     public String toString ()
     {
@@ -15,6 +15,12 @@ public class ExpressionResultOutputInstruction extends Instruction
         this.expression = expression;
     }
 
+    @Override
+    Instruction copy ()
+    {
+        return new ExpressionResultOutputInstruction(expression);
+    }
+
     public OutputExpression getExpression ()
     {
         return expression;
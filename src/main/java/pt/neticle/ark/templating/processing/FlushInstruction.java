@@ -0,0 +1,24 @@
+package pt.neticle.ark.templating.processing;
+
+/**
+ * Instructs the renderer to flush everything written so far to the underlying sink.
+ */
+public class FlushInstruction extends Instruction
+{
+    FlushInstruction ()
+    {
+        super(Type.FLUSH);
+    }
+
+    @Override
+    Instruction copy ()
+    {
+        return new FlushInstruction();
+    }
+
+    @Override
+    public String toString ()
+    {
+        return super.toString() + "]";
+    }
+}
@@ -12,13 +12,19 @@ public abstract class Instruction
         EXPRESSION_RESULT_OUTPUT,
         EXPAND_SLOT,
         EXPAND_INNER_TEMPLATE,
-        EXPAND_TEMPLATE
+        EXPAND_TEMPLATE,
+        FLUSH
     };
 
     private final Type type;
 
     private Instruction next;
 
+    /**
+     * The chain starting at this instruction, compiled when first rendered.
+     */
+    private volatile Program program;
+
     Instruction (Type type)
     {
         this.type = type;
@@ -39,6 +45,55 @@ public abstract class Instruction
         return next;
     }
 
+    /**
+     * Gets the chain of instructions starting at this one, compiled into the form the renderer executes.
+     *
+     * @return
+     */
+    public Program getProgram ()
+    {
+        Program result = program;
+
+        if(result == null)
+        {
+            program = result = Program.compile(this);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return An instruction like this one, not chained to any other
+     */
+    abstract Instruction copy ();
+
+    /**
+     * Copies a chain of instructions.
+     *
+     * @param first The first instruction of the chain, or null for an empty one
+     * @return The first instruction of the copy
+     */
+    static Instruction copyChain (Instruction first)
+    {
+        Instruction head = null, tail = null;
+
+        for(Instruction i = first; i != null; i = i.getNext())
+        {
+            Instruction copy = i.copy();
+
+            if(tail == null)
+            {
+                head = tail = copy;
+            }
+            else
+            {
+                tail = tail.setNext(copy);
+            }
+        }
+
+        return head;
+    }
+
     <T extends Instruction> T setNext (T next)
     {
         return (T) (this.next = next);
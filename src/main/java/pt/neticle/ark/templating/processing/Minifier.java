@@ -0,0 +1,141 @@
+package pt.neticle.ark.templating.processing;
+
+import pt.neticle.ark.templating.structure.ReadableElement;
+import pt.neticle.ark.templating.structure.TemplateElement;
+
+/**
+ * Reduces the static text of templates while they are being pre-processed.
+ *
+ * Whitespace is collapsed conservatively: a run of whitespace becomes a single space rather than
+ * disappearing, so that the spacing between inline content is kept. Only text that is entirely made
+ * of whitespace and spans multiple lines, which is what indentation between elements looks like, is
+ * removed altogether.
+ */
+final class Minifier
+{
+    private Minifier ()
+    {
+    }
+
+    /**
+     * @param element
+     * @return Whether the content of the element must be output as it is
+     */
+    static boolean preservesContent (ReadableElement element)
+    {
+        switch(element.getTagName())
+        {
+            case "pre":
+            case "textarea":
+            case "script":
+            case "style":
+                return true;
+        }
+
+        return element.isTextContent();
+    }
+
+    /**
+     * @param element
+     * @return Whether the element or any of its ancestors preserves its content
+     */
+    static boolean isWithinPreservedContent (ReadableElement element)
+    {
+        for(ReadableElement e = element; e != null;
+            e = e instanceof TemplateElement ? ((TemplateElement) e).getParent() : null)
+        {
+            if(preservesContent(e))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param text The text to minify
+     * @param standalone Whether the text is a whole text node, in which case it's removed if it only
+     *                   consists of whitespace spanning multiple lines. Pieces of text between expressions
+     *                   always keep at least a space.
+     * @return
+     */
+    static String minify (String text, boolean standalone)
+    {
+        text = stripComments(text);
+
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean inWhitespace = false;
+        boolean hasNewline = false;
+
+        for(int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+
+            if(Character.isWhitespace(c))
+            {
+                hasNewline |= c == '\n';
+
+                if(!inWhitespace)
+                {
+                    sb.append(' ');
+                    inWhitespace = true;
+                }
+
+                continue;
+            }
+
+            sb.append(c);
+            inWhitespace = false;
+        }
+
+        if(standalone && hasNewline && sb.length() == 1 && sb.charAt(0) == ' ')
+        {
+            return "";
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Removes HTML comments, except conditional comments such as <!--[if IE]>
+     */
+    private static String stripComments (String text)
+    {
+        int start = text.indexOf("<!--");
+
+        if(start < 0)
+        {
+            return text;
+        }
+
+        StringBuilder sb = new StringBuilder(text.length());
+        int offset = 0;
+
+        while(start >= 0)
+        {
+            int end = text.indexOf("-->", start + 4);
+
+            if(end < 0)
+            {
+                break;
+            }
+
+            if(text.startsWith("<!--[if", start))
+            {
+                sb.append(text, offset, end + 3);
+            }
+            else
+            {
+                sb.append(text, offset, start);
+            }
+
+            offset = end + 3;
+            start = text.indexOf("<!--", offset);
+        }
+
+        sb.append(text, offset, text.length());
+
+        return sb.toString();
+    }
+}
@@ -1,11 +1,17 @@
 package pt.neticle.ark.templating.processing;
 
 import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.exception.PreprocessingException;
+import pt.neticle.ark.templating.renderer.DigestingOutputStream;
+import pt.neticle.ark.templating.renderer.RenderResult;
 import pt.neticle.ark.templating.structure.*;
 import pt.neticle.ark.templating.structure.expressions.OutputExpression;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -18,23 +24,409 @@ import java.util.stream.Stream;
 public class PreprocessedInstructionSet
 {
     private final TemplatingEngine engine;
+    private final Function<String, TemplateRootElement> templates;
     private final Instruction root;
     private Instruction current;
 
+    /**
+     * Whether static content is to be minified, and how many of the elements being visited require their
+     * content to be kept as it is.
+     */
+    private final boolean minify;
+    private int preserveDepth = 0;
+
+    /**
+     * What's derived from this set and the sets it's linked to, replaced as a whole when linking, so that
+     * results computed from the previous links are never kept.
+     */
+    private volatile Derived derived = new Derived();
+
+    private static final class Derived
+    {
+        /**
+         * The preset dictionary for compressed output, built when first requested.
+         */
+        private volatile byte[] compressionDictionary;
+
+        /**
+         * The result of rendering the set, computed when first requested if the set only has static content.
+         */
+        private volatile RenderResult staticResult;
+
+        /**
+         * The output of the set if it's static, resolved when first requested.
+         */
+        private volatile byte[] staticOutput;
+        private volatile boolean staticOutputResolved = false;
+
+        /**
+         * The references the set reads from the scope, collected when first requested.
+         */
+        private volatile Set<String> referencedPaths;
+    }
+
+    /**
+     * How deep static output is looked for through expansions, bounding templates that expand themselves.
+     */
+    private static final int maxStaticDepth = 64;
+
+    /**
+     * The window size of the deflate format, which bounds how much of a dictionary can be used.
+     */
+    private static final int maxDictionaryLength = 32 * 1024;
+
     public PreprocessedInstructionSet (TemplatingEngine engine, Node node)
+    {
+        this(engine, engine::lookupTemplate, node);
+    }
+
+    /**
+     * @param engine The engine the instruction set belongs to
+     * @param templates Resolves the names of other templates used within the node, returns null for
+     *                  unknown names
+     * @param node The node to preprocess
+     */
+    public PreprocessedInstructionSet (TemplatingEngine engine, Function<String, TemplateRootElement> templates, Node node)
     {
         this.engine = engine;
+        this.templates = templates;
+        this.minify = engine.isMinifyingOutput();
+
+        if(minify && node instanceof TemplateElement && ((TemplateElement) node).getParent() != null &&
+            Minifier.isWithinPreservedContent(((TemplateElement) node).getParent()))
+        {
+            // Slotted content placed within a pre element or similar
+            preserveDepth++;
+        }
 
         root = current = new RawOutputInstruction();
 
         visit(node);
     }
 
+    private PreprocessedInstructionSet (PreprocessedInstructionSet source)
+    {
+        this.engine = source.engine;
+        this.templates = source.templates;
+        this.minify = source.minify;
+        this.root = current = Instruction.copyChain(source.root);
+    }
+
+    /**
+     * Copies this set without linking it, for templates whose content didn't change but that expand templates
+     * that did, which is cheaper than pre-processing them again. Renders still using this set aren't affected
+     * by linking the copy.
+     *
+     * @return
+     */
+    public PreprocessedInstructionSet copy ()
+    {
+        return new PreprocessedInstructionSet(this);
+    }
+
     public Instruction getRoot ()
     {
         return root;
     }
 
+    /**
+     * Counts the instructions in the main chain of this set, not including those of slotted content.
+     *
+     * @return
+     */
+    public int getInstructionCount ()
+    {
+        int count = 0;
+
+        for(Instruction i = root; i != null; i = i.getNext())
+        {
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Sums the length of all raw output in the main chain of this set, not including slotted content.
+     *
+     * @return
+     */
+    public long getStaticContentLength ()
+    {
+        long length = 0;
+
+        for(Instruction i = root; i != null; i = i.getNext())
+        {
+            if(i.is(Instruction.Type.RAW_OUTPUT))
+            {
+                length += ((RawOutputInstruction) i).getContent().length();
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Whether this set only produces static content, always rendering the same output regardless of scope.
+     * Expanded templates count as static content if they're static themselves, as does any content slotted
+     * into them.
+     *
+     * @return
+     */
+    public boolean isStatic ()
+    {
+        return getStaticOutput() != null;
+    }
+
+    /**
+     * Gets the complete output of this set, computed once, if it only has static content.
+     *
+     * @return The UTF-8 encoded output every render of this set produces, or null if the set isn't static
+     */
+    public byte[] getStaticOutput ()
+    {
+        final Derived d = derived;
+
+        if(!d.staticOutputResolved)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            // Rendered on its own, a template has no slotted content
+            d.staticOutput = collectStaticOutput(Program.of(root), new StaticSlots(Collections.emptyMap(), null), out, 0) ?
+                out.toByteArray() : null;
+            d.staticOutputResolved = true;
+        }
+
+        return d.staticOutput;
+    }
+
+    /**
+     * Gets the paths of the references this set reads from the scope it's rendered with, such as "user" or
+     * "user.permissions", including those read by the templates it expands. Variables defined within the
+     * set, such as the attributes passed to expanded templates or the items of foreach templates, aren't
+     * included.
+     *
+     * @return
+     */
+    public Set<String> getReferencedPaths ()
+    {
+        final Derived d = derived;
+        Set<String> result = d.referencedPaths;
+
+        if(result == null)
+        {
+            d.referencedPaths = result = ReferenceAnalysis.collect(this);
+        }
+
+        return result;
+    }
+
+    /**
+     * Slotted content available to the slots of a template while looking for static output.
+     */
+    private static final class StaticSlots
+    {
+        private final Map<String, Program> programs;
+
+        /**
+         * The slots of the template declaring the slotted content, or null if they're not known.
+         */
+        private final StaticSlots caller;
+
+        private StaticSlots (Map<String, Program> programs, StaticSlots caller)
+        {
+            this.programs = programs;
+            this.caller = caller;
+        }
+    }
+
+    /**
+     * Writes the output of a program to the stream, if it's the same for every render.
+     *
+     * @param slots The slotted content the program's slots expand, or null if it's not known
+     * @return Whether the program is static, if not the stream is left with partial output
+     */
+    private static boolean collectStaticOutput (Program program, StaticSlots slots, ByteArrayOutputStream out, int depth)
+    {
+        if(depth > maxStaticDepth)
+        {
+            return false;
+        }
+
+        final int[] code = program.getCode();
+        final Object[] operands = program.getOperands();
+
+        for(int i = 0; i < program.size(); i++)
+        {
+            switch(code[i << 1])
+            {
+                case Program.WRITE:
+                    byte[] bytes = (byte[]) operands[i];
+                    out.write(bytes, 0, bytes.length);
+                    break;
+
+                case Program.SLOT:
+                    if(slots == null)
+                    {
+                        return false;
+                    }
+
+                    Program members = slots.programs.get(((ExpandSlotInstruction) operands[i]).getSlotKey());
+
+                    if(members != null && !collectStaticOutput(members, slots.caller, out, depth + 1))
+                    {
+                        return false;
+                    }
+                    break;
+
+                case Program.EXPAND:
+                    if(!collectStaticOutput((ExpandTemplateInstruction) operands[i], slots, out, depth + 1))
+                    {
+                        return false;
+                    }
+                    break;
+
+                default:
+                    // Expressions, conditions, iterations, and flush points that have to reach the output stream
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    static boolean collectStaticOutput (ExpandTemplateInstruction expand, StaticSlots callerSlots, ByteArrayOutputStream out, int depth)
+    {
+        PreprocessedInstructionSet expanded = expand.getLinkedInstructionSet() != null ?
+            expand.getLinkedInstructionSet() : expand.getTemplate().getInstructionSet();
+
+        return expanded != null && collectStaticOutput(Program.of(expanded.getRoot()),
+            new StaticSlots(expand.getSlotPrograms(), callerSlots), out, depth);
+    }
+
+    /**
+     * Gets the size and digest of the output of this set, computed once, if it only has static content.
+     *
+     * @return The result every render of this set produces, or null if the set isn't static
+     */
+    public RenderResult getStaticResult ()
+    {
+        final Derived d = derived;
+        RenderResult result = d.staticResult;
+
+        final byte[] content;
+
+        if(result == null && (content = getStaticOutput()) != null)
+        {
+            d.staticResult = result = new RenderResult(content.length, DigestingOutputStream.digest(content));
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets a preset dictionary for compressing the output of this set, made of its static content, including
+     * that of slotted content and of the templates it expands. Content closer to the end of the output is
+     * kept at the end of the dictionary, where deflate finds it with shorter distances, and anything beyond
+     * the 32KB deflate window is dropped.
+     *
+     * @return The dictionary, as the UTF-8 bytes of the static content
+     */
+    public byte[] getCompressionDictionary ()
+    {
+        final Derived d = derived;
+        byte[] dictionary = d.compressionDictionary;
+
+        if(dictionary == null)
+        {
+            StringBuilder sb = new StringBuilder();
+            collectStaticContent(root, sb, new HashSet<>());
+
+            dictionary = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+            if(dictionary.length > maxDictionaryLength)
+            {
+                dictionary = Arrays.copyOfRange(dictionary, dictionary.length - maxDictionaryLength, dictionary.length);
+            }
+
+            d.compressionDictionary = dictionary;
+        }
+
+        return dictionary;
+    }
+
+    private void collectStaticContent (Instruction first, StringBuilder sb, Set<String> visitedTemplates)
+    {
+        for(Instruction i = first; i != null; i = i.getNext())
+        {
+            if(i.is(Instruction.Type.RAW_OUTPUT))
+            {
+                sb.append(((RawOutputInstruction) i).getContent());
+            }
+            else if(i.is(Instruction.Type.EXPAND_TEMPLATE))
+            {
+                ExpandTemplateInstruction expand = (ExpandTemplateInstruction) i;
+
+                for(List<Instruction> members : expand.getPreprocessedSlotMembers().values())
+                {
+                    for(Instruction member : members)
+                    {
+                        collectStaticContent(member, sb, visitedTemplates);
+                    }
+                }
+
+                // Each template only contributes once, repeating it wouldn't make the dictionary any better
+                PreprocessedInstructionSet expanded = expand.getLinkedInstructionSet() != null ?
+                    expand.getLinkedInstructionSet() :
+                    expand.getTemplate() != null ? expand.getTemplate().getInstructionSet() : null;
+
+                if(expanded != null && visitedTemplates.add(expand.getTemplateName()))
+                {
+                    collectStaticContent(expanded.getRoot(), sb, visitedTemplates);
+                }
+            }
+        }
+    }
+
+    /**
+     * Links every template expansion in this set, including those within slotted content, to the
+     * instruction set of the template it expands. Whatever was derived from the previously linked sets,
+     * such as the static output and the referenced paths, is resolved again when next requested.
+     *
+     * @param instructionSets Gets the instruction set to link to for a template, or null to leave the
+     *                        expansion to be linked when first rendered
+     */
+    public void link (Function<TemplateRootElement, PreprocessedInstructionSet> instructionSets)
+    {
+        link(root, instructionSets);
+
+        derived = new Derived();
+    }
+
+    private static void link (Instruction first, Function<TemplateRootElement, PreprocessedInstructionSet> instructionSets)
+    {
+        for(Instruction i = first; i != null; i = i.getNext())
+        {
+            if(i.is(Instruction.Type.EXPAND_TEMPLATE))
+            {
+                ExpandTemplateInstruction expand = (ExpandTemplateInstruction) i;
+
+                if(expand.getTemplate() != null)
+                {
+                    expand.link(instructionSets.apply(expand.getTemplate()));
+                }
+
+                for(List<Instruction> members : expand.getPreprocessedSlotMembers().values())
+                {
+                    for(Instruction member : members)
+                    {
+                        link(member, instructionSets);
+                    }
+                }
+            }
+        }
+    }
+
     public void dump (PrintStream out)
     {
         Instruction current = root;
@@ -53,7 +445,17 @@ public class PreprocessedInstructionSet
                 visitText((ReadableText) node);
                 break;
             case ELEMENT:
-                visitElement((ReadableElement) node);
+                try
+                {
+                    visitElement((ReadableElement) node);
+                } catch(PreprocessingException e)
+                {
+                    throw e;
+                } catch(RuntimeException e)
+                {
+                    // Reported against the innermost element that failed
+                    throw new PreprocessingException(((ReadableElement) node).getTagName(), e);
+                }
                 break;
             case ATTRIBUTE:
                 visitAttribute((ReadableAttribute) node);
@@ -79,11 +481,20 @@ public class PreprocessedInstructionSet
             return;
         }
 
-        if(element.getTagName().equals("template") || engine.hasTemplate(element.getTagName()))
+        if(element.getTagName().equals("t:flush"))
+        {
+            // Flush points don't produce any output, the renderer simply passes them through to the
+            // output stream so that everything before them can be sent early.
+            current = current.setNext(new FlushInstruction());
+            return;
+        }
+
+        TemplateRootElement templateElement = !element.getTagName().equals("template") ?
+            templates.apply(element.getTagName()) :
+            null;
+
+        if(element.getTagName().equals("template") || templateElement != null)
         {
-            TemplateRootElement templateElement = !element.getTagName().equals("template") ?
-                (TemplateRootElement) engine.getTemplate(element.getTagName()) :
-                null;
 
             Set<String> whitelistedSlots = templateElement != null ?
                 templateElement.getSlots() :
@@ -97,7 +508,7 @@ public class PreprocessedInstructionSet
                     .map(e -> (ReadableElement)e)
                     .filter(e -> e.hasAttribute("slot") &&
                                  e.getAttribute("slot").getValue().getContent().equals(reqSlotName))
-                    .map(e -> new PreprocessedInstructionSet(engine, e).getRoot())
+                    .map(e -> new PreprocessedInstructionSet(engine, templates, e).getRoot())
                     .collect(Collectors.toList());
 
                 // Grab any children of the declaring element that have an attribute "slot" and the value
@@ -110,7 +521,7 @@ public class PreprocessedInstructionSet
                 List<Instruction> pl = element.childs()
                     .filter((n) -> (n instanceof ReadableElement) &&
                             (!((ReadableElement)n).hasAttribute("slot")))
-                    .map(n -> new PreprocessedInstructionSet(engine, n).getRoot())
+                    .map(n -> new PreprocessedInstructionSet(engine, templates, n).getRoot())
                     .collect(Collectors.toList());
 
                 // Grab any children of the declaring element that don't have an attribute "slot"
@@ -121,7 +532,8 @@ public class PreprocessedInstructionSet
             Map<String, List<TemplateExpressionText.Segment>> attributes =
                 element.attributes()
                 .collect(Collectors.toMap(
-                    a -> a.getName(),
+                    // Interned, for scopes to match them by identity
+                    a -> a.getName().intern(),
                     a ->
                     {
                         // Grab the attributes of the declaring element.
@@ -139,7 +551,7 @@ public class PreprocessedInstructionSet
                 ));
 
             current = current.setNext(new ExpandTemplateInstruction(
-                    element.getTagName(), preprocessedSlotMembers, attributes));
+                    element.getTagName(), templateElement, preprocessedSlotMembers, attributes));
 
             return;
         }
@@ -156,8 +568,20 @@ public class PreprocessedInstructionSet
 
         appendRawOutput(">");
 
+        final boolean preserve = minify && Minifier.preservesContent(element);
+
+        if(preserve)
+        {
+            preserveDepth++;
+        }
+
         element.childs().forEach(this::visit);
 
+        if(preserve)
+        {
+            preserveDepth--;
+        }
+
         appendRawOutput("</" + element.getTagName() + ">");
     }
 
@@ -225,7 +649,8 @@ public class PreprocessedInstructionSet
             {
                 if(segment.getType() == TemplateExpressionText.Segment.Type.TEXT)
                 {
-                    appendRawOutput((String) segment.getObject());
+                    appendRawOutput(isMinifying() ?
+                        Minifier.minify((String) segment.getObject(), false) : (String) segment.getObject());
                 } else if(segment.getType() == TemplateExpressionText.Segment.Type.EXPRESSION)
                 {
                     // For expression segments, we only care about those that contain an
@@ -243,7 +668,12 @@ public class PreprocessedInstructionSet
             return;
         }
 
-        appendRawOutput(text.getContent());
+        appendRawOutput(isMinifying() ? Minifier.minify(text.getContent(), true) : text.getContent());
+    }
+
+    private boolean isMinifying ()
+    {
+        return minify && preserveDepth == 0;
     }
 
     private void appendRawOutput (String str)
@@ -0,0 +1,348 @@
+package pt.neticle.ark.templating.processing;
+
+import pt.neticle.ark.templating.structure.TemplateExpressionText;
+import pt.neticle.ark.templating.structure.expressions.Expression;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A chain of instructions flattened into arrays, the form the renderer executes.
+ *
+ * Each operation has an operation code and a jump target in {@link #getCode()}, at twice its index, and its
+ * operand at its index in {@link #getOperands()}. Adjacent raw output is merged into a single chunk of UTF-8
+ * bytes. Inner templates are compiled in place: conditions into jumps, and foreach templates into a loop
+ * over their content. Expansions of other templates and slots remain single operations, running the
+ * program of the expanded template or of the slotted content, which are only known when rendering.
+ *
+ * This is also the form the static output and the referenced variables of a set are found in, so that
+ * they always follow what rendering does.
+ */
+public final class Program
+{
+    /**
+     * Writes the byte[] operand.
+     */
+    public static final int WRITE = 0;
+
+    /**
+     * Outputs the result of the {@link ExpressionResultOutputInstruction} operand.
+     */
+    public static final int OUTPUT = 1;
+
+    /**
+     * Expands the slot of the {@link ExpandSlotInstruction} operand.
+     */
+    public static final int SLOT = 2;
+
+    /**
+     * Expands the template of the {@link ExpandTemplateInstruction} operand.
+     */
+    public static final int EXPAND = 3;
+
+    /**
+     * Starts iterating over the data of the foreach {@link ExpandTemplateInstruction} operand, in a scope of
+     * its own. The operations that follow, up to the matching {@link #NEXT}, are repeated for each item. If
+     * there's nothing to iterate, continues at the jump target, where the empty slot is.
+     */
+    public static final int FOREACH = 4;
+
+    /**
+     * Moves the innermost iteration to its next item, continuing at the jump target if there's one. Otherwise,
+     * the iteration ends and is followed by a jump past the empty slot.
+     */
+    public static final int NEXT = 5;
+
+    /**
+     * Flushes the output.
+     */
+    public static final int FLUSH = 6;
+
+    /**
+     * Continues at the jump target.
+     */
+    public static final int JUMP = 7;
+
+    /**
+     * Continues at the jump target if the {@link Expression} operand evaluates as false.
+     */
+    public static final int JUMP_UNLESS = 8;
+
+    /**
+     * Continues at the jump target unless the is attribute of the {@link ExpandTemplateInstruction} operand,
+     * only known when rendering, is foreach.
+     */
+    public static final int JUMP_UNLESS_FOREACH = 9;
+
+    private static final Program empty = new Program(new int[0], new Object[0]);
+
+    private final int[] code;
+    private final Object[] operands;
+
+    private Program (int[] code, Object[] operands)
+    {
+        this.code = code;
+        this.operands = operands;
+    }
+
+    /**
+     * @return The operation code of each operation followed by its jump target
+     */
+    public int[] getCode ()
+    {
+        return code;
+    }
+
+    public Object[] getOperands ()
+    {
+        return operands;
+    }
+
+    public int size ()
+    {
+        return operands.length;
+    }
+
+    static Program compile (Instruction first)
+    {
+        Compiler compiler = new Compiler();
+        compiler.chain(first);
+
+        return compiler.build();
+    }
+
+    /**
+     * @param first The first instruction of a chain, or null for an empty one
+     * @return The program of the chain
+     */
+    static Program of (Instruction first)
+    {
+        return first != null ? first.getProgram() : empty;
+    }
+
+    /**
+     * Compiles the members of each slot into a single program.
+     *
+     * @param members The instructions of each slot, as pre-processed for a template expansion
+     * @return The program of each slot
+     */
+    public static Map<String, Program> compileSlots (Map<String, List<Instruction>> members)
+    {
+        if(members.isEmpty())
+        {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Program> programs = new HashMap<>(members.size());
+
+        for(Map.Entry<String, List<Instruction>> e : members.entrySet())
+        {
+            Compiler compiler = new Compiler();
+            compiler.members(e.getValue());
+
+            programs.put(e.getKey(), compiler.build());
+        }
+
+        return programs;
+    }
+
+    private static final class Compiler
+    {
+        private int[] code = new int[16];
+        private Object[] operands = new Object[8];
+        private int size = 0;
+
+        /**
+         * Raw output waiting to be written as a single chunk.
+         */
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+        private void chain (Instruction first)
+        {
+            for(Instruction i = first; i != null; i = i.getNext())
+            {
+                switch(i.getType())
+                {
+                    case RAW_OUTPUT:
+                        byte[] bytes = ((RawOutputInstruction) i).getBytes();
+                        pending.write(bytes, 0, bytes.length);
+                        break;
+
+                    case EXPRESSION_RESULT_OUTPUT:
+                        emit(OUTPUT, i);
+                        break;
+
+                    case EXPAND_SLOT:
+                        emit(SLOT, i);
+                        break;
+
+                    case EXPAND_TEMPLATE:
+                        if(((ExpandTemplateInstruction) i).getTemplateName().equals("template"))
+                        {
+                            innerTemplate((ExpandTemplateInstruction) i);
+                        }
+                        else
+                        {
+                            emit(EXPAND, i);
+                        }
+                        break;
+
+                    case FLUSH:
+                        emit(FLUSH, i);
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void innerTemplate (ExpandTemplateInstruction inst)
+        {
+            final List<TemplateExpressionText.Segment> is = inst.getAttributes().get("is");
+            final String type = is != null ? text(is) : null;
+
+            final List<TemplateExpressionText.Segment> ifSegments = inst.getAttributes().get("if");
+            final Expression condition = ifSegments != null && ifSegments.size() == 1 &&
+                ifSegments.get(0).getType() == TemplateExpressionText.Segment.Type.EXPRESSION ?
+                (Expression) ifSegments.get(0).getObject() : null;
+
+            final int unless = condition != null ? emit(JUMP_UNLESS, condition) : -1;
+
+            if(is == null)
+            {
+                members(inst.getPreprocessedSlotMembers().get("@unassigned"));
+            }
+            else if(type == null)
+            {
+                // The type depends on the scope, and only foreach templates render anything
+                final int other = emit(JUMP_UNLESS_FOREACH, inst);
+                foreach(inst);
+                target(other);
+            }
+            else if(type.equals("foreach"))
+            {
+                foreach(inst);
+            }
+
+            if(condition != null)
+            {
+                final int end = emit(JUMP, null);
+
+                target(unless);
+                members(inst.getPreprocessedSlotMembers().get("else"));
+                target(end);
+            }
+        }
+
+        private void foreach (ExpandTemplateInstruction inst)
+        {
+            final List<Instruction> repeated = inst.getPreprocessedSlotMembers().get("@unassigned");
+
+            final int start = emit(FOREACH, inst);
+
+            // Only the first element is repeated
+            if(repeated != null && !repeated.isEmpty())
+            {
+                chain(repeated.get(0));
+            }
+
+            final int next = emit(NEXT, null);
+            code[(next << 1) + 1] = start + 1;
+
+            final int end = emit(JUMP, null);
+
+            target(start);
+            members(inst.getPreprocessedSlotMembers().get("empty"));
+            target(end);
+        }
+
+        private void members (List<Instruction> members)
+        {
+            if(members != null)
+            {
+                for(Instruction member : members)
+                {
+                    chain(member);
+                }
+            }
+        }
+
+        /**
+         * Appends an operation, after any raw output waiting to be written.
+         *
+         * @return The index of the operation
+         */
+        private int emit (int opcode, Object operand)
+        {
+            writePending();
+            return append(opcode, operand);
+        }
+
+        private void writePending ()
+        {
+            if(pending.size() > 0)
+            {
+                byte[] chunk = pending.toByteArray();
+                pending.reset();
+                append(WRITE, chunk);
+            }
+        }
+
+        private int append (int opcode, Object operand)
+        {
+            if(size == operands.length)
+            {
+                operands = Arrays.copyOf(operands, size * 2);
+                code = Arrays.copyOf(code, size * 4);
+            }
+
+            code[size << 1] = opcode;
+            code[(size << 1) + 1] = -1;
+            operands[size] = operand;
+
+            return size++;
+        }
+
+        /**
+         * Makes the jump at the given index continue at the next operation to be appended.
+         */
+        private void target (int jump)
+        {
+            // Raw output before the target can't be merged with what follows it
+            writePending();
+            code[(jump << 1) + 1] = size;
+        }
+
+        private Program build ()
+        {
+            writePending();
+
+            return new Program(Arrays.copyOf(code, size << 1), Arrays.copyOf(operands, size));
+        }
+
+        private static String text (List<TemplateExpressionText.Segment> segments)
+        {
+            StringBuilder sb = new StringBuilder();
+
+            for(TemplateExpressionText.Segment segment : segments)
+            {
+                if(segment.getType() == TemplateExpressionText.Segment.Type.EXPRESSION)
+                {
+                    return null;
+                }
+
+                if(segment.getType() == TemplateExpressionText.Segment.Type.TEXT)
+                {
+                    sb.append((String) segment.getObject());
+                }
+            }
+
+            return sb.toString();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package pt.neticle.ark.templating.processing;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Instructs the renderer to output raw text content contained in here.
  */
@@ -7,12 +9,26 @@ public class RawOutputInstruction extends Instruction
 {
     private final StringBuilder sb;
 
+    /**
+     * The content encoded as UTF-8, once pre-processing is done and it's first rendered.
+     */
+    private volatile byte[] bytes;
+
     RawOutputInstruction ()
     {
         super(Type.RAW_OUTPUT);
         this.sb = new StringBuilder();
     }
 
+    @Override
+    Instruction copy ()
+    {
+        RawOutputInstruction copy = new RawOutputInstruction();
+        copy.sb.append(sb);
+
+        return copy;
+    }
+
     public void append (String str)
     {
         sb.append(str);
@@ -23,6 +39,21 @@ public class RawOutputInstruction extends Instruction
         return sb.toString();
     }
 
+    /**
+     * @return The content encoded as UTF-8, encoded once and reused by every render
+     */
+    public byte[] getBytes ()
+    {
+        byte[] result = bytes;
+
+        if(result == null)
+        {
+            bytes = result = getContent().getBytes(StandardCharsets.UTF_8);
+        }
+
+        return result;
+    }
+
     @Override
     public String toString ()
     {
@@ -0,0 +1,207 @@
+package pt.neticle.ark.templating.processing;
+
+import pt.neticle.ark.templating.structure.TemplateExpressionText;
+import pt.neticle.ark.templating.structure.expressions.Expression;
+import pt.neticle.ark.templating.structure.expressions.ObjectReferenceExpression;
+
+import java.util.*;
+
+/**
+ * Finds the variables an instruction set reads from the scope it's rendered with, following its program
+ * with the same scoping rules as the renderer.
+ *
+ * Expansions of other templates are followed into the expanded template, where the attributes passed to it
+ * are defined, as are the variables of foreach templates within their content. References to defined
+ * variables aren't reported, the expressions passed in attributes are.
+ */
+final class ReferenceAnalysis
+{
+    /**
+     * How deep expansions are followed, bounding templates that expand themselves.
+     */
+    private static final int maxDepth = 64;
+
+    /**
+     * Mirrors the slot owner of the renderer: the slotted content its slots expand, the variables defined
+     * where that content is rendered, and the owner of the slots within that content.
+     */
+    private static final class SlotOwner
+    {
+        private final Map<String, Program> programs;
+        private final SlotOwner caller;
+
+        /**
+         * The variables defined when the owner expanded another template, or null while the instructions
+         * being analyzed are those of the owner itself.
+         */
+        private final Set<String> defined;
+
+        private SlotOwner (Map<String, Program> programs, SlotOwner caller, Set<String> defined)
+        {
+            this.programs = programs;
+            this.caller = caller;
+            this.defined = defined;
+        }
+    }
+
+    private final Set<String> paths = new TreeSet<>();
+
+    private ReferenceAnalysis ()
+    {
+    }
+
+    /**
+     * @param instructionSet
+     * @return The paths of the references read from the scope, such as "user" or "user.permissions"
+     */
+    static Set<String> collect (PreprocessedInstructionSet instructionSet)
+    {
+        ReferenceAnalysis analysis = new ReferenceAnalysis();
+        analysis.visit(Program.of(instructionSet.getRoot()), Collections.emptySet(),
+            new SlotOwner(Collections.emptyMap(), null, null), 0);
+
+        return Collections.unmodifiableSet(analysis.paths);
+    }
+
+    private void visit (Program program, Set<String> defined, SlotOwner owner, int depth)
+    {
+        if(depth > maxDepth)
+        {
+            return;
+        }
+
+        final int[] code = program.getCode();
+        final Object[] operands = program.getOperands();
+
+        // The variables defined outside of each iteration being visited
+        final Deque<Set<String>> iterations = new ArrayDeque<>();
+
+        for(int i = 0; i < program.size(); i++)
+        {
+            switch(code[i << 1])
+            {
+                case Program.OUTPUT:
+                    reference(((ExpressionResultOutputInstruction) operands[i]).getExpression(), defined);
+                    break;
+
+                case Program.SLOT:
+                    visitSlot((ExpandSlotInstruction) operands[i], defined, owner, depth);
+                    break;
+
+                case Program.EXPAND:
+                    visitExpansion((ExpandTemplateInstruction) operands[i], defined, owner, depth);
+                    break;
+
+                case Program.JUMP_UNLESS:
+                    reference((Expression) operands[i], defined);
+                    break;
+
+                case Program.JUMP_UNLESS_FOREACH:
+                    attributes((ExpandTemplateInstruction) operands[i], defined);
+                    break;
+
+                case Program.FOREACH:
+                    ExpandTemplateInstruction foreach = (ExpandTemplateInstruction) operands[i];
+                    attributes(foreach, defined);
+
+                    iterations.push(defined);
+                    defined = new HashSet<>(defined);
+                    defined.add(Optional.ofNullable(text(foreach.getAttributes().get("as"))).orElse("item"));
+                    Optional.ofNullable(text(foreach.getAttributes().get("loop"))).ifPresent(defined::add);
+                    break;
+
+                case Program.NEXT:
+                    defined = iterations.pop();
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void visitSlot (ExpandSlotInstruction inst, Set<String> defined, SlotOwner owner, int depth)
+    {
+        final Program members = owner != null ? owner.programs.get(inst.getSlotKey()) : null;
+
+        if(members == null)
+        {
+            return;
+        }
+
+        // Slotted content is rendered with the scope of its owner, and its own slots expand those of the caller
+        visit(members, owner.defined != null ? owner.defined : defined, owner.caller, depth + 1);
+    }
+
+    private void visitExpansion (ExpandTemplateInstruction inst, Set<String> defined, SlotOwner owner, int depth)
+    {
+        attributes(inst, defined);
+
+        final PreprocessedInstructionSet expanded = inst.getLinkedInstructionSet() != null ?
+            inst.getLinkedInstructionSet() : inst.getTemplate().getInstructionSet();
+
+        if(expanded == null)
+        {
+            return;
+        }
+
+        final Set<String> expansion = new HashSet<>(defined);
+        expansion.addAll(inst.getAttributes().keySet());
+
+        final SlotOwner caller = owner.defined != null ? owner : new SlotOwner(owner.programs, owner.caller, defined);
+
+        visit(Program.of(expanded.getRoot()), expansion, new SlotOwner(inst.getSlotPrograms(), caller, null), depth + 1);
+    }
+
+    private void attributes (ExpandTemplateInstruction inst, Set<String> defined)
+    {
+        for(List<TemplateExpressionText.Segment> segments : inst.getAttributes().values())
+        {
+            for(TemplateExpressionText.Segment segment : segments)
+            {
+                if(segment.getType() == TemplateExpressionText.Segment.Type.EXPRESSION)
+                {
+                    reference((Expression) segment.getObject(), defined);
+                }
+            }
+        }
+    }
+
+    private void reference (Expression expression, Set<String> defined)
+    {
+        expression.visitReferences((ObjectReferenceExpression reference) ->
+        {
+            String[] segments = reference.getSegments();
+
+            if(segments.length > 0 && !defined.contains(segments[0]))
+            {
+                paths.add(String.join(".", segments));
+            }
+        });
+    }
+
+    /**
+     * @return The text of an attribute, or null if it's missing, empty or not plain text
+     */
+    private static String text (List<TemplateExpressionText.Segment> segments)
+    {
+        if(segments == null)
+        {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for(TemplateExpressionText.Segment segment : segments)
+        {
+            if(segment.getType() != TemplateExpressionText.Segment.Type.TEXT)
+            {
+                return null;
+            }
+
+            sb.append((String) segment.getObject());
+        }
+
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+}
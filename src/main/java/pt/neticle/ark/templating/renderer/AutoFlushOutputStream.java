@@ -0,0 +1,42 @@
+package pt.neticle.ark.templating.renderer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Flushes the underlying stream once, as soon as the specified amount of bytes has been written,
+ * so that the beginning of a document reaches the client without waiting for the rest of it.
+ */
+public class AutoFlushOutputStream extends FilterOutputStream
+{
+    private long remaining;
+
+    public AutoFlushOutputStream (OutputStream out, long threshold)
+    {
+        super(out);
+        this.remaining = threshold;
+    }
+
+    @Override
+    public void write (int b) throws IOException
+    {
+        out.write(b);
+        written(1);
+    }
+
+    @Override
+    public void write (byte[] b, int off, int len) throws IOException
+    {
+        out.write(b, off, len);
+        written(len);
+    }
+
+    private void written (int len) throws IOException
+    {
+        if(remaining > 0 && (remaining -= len) <= 0)
+        {
+            out.flush();
+        }
+    }
+}
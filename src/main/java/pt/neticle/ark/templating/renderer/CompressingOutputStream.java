@@ -0,0 +1,145 @@
+package pt.neticle.ark.templating.renderer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses rendered output in one of the {@link Compression} formats.
+ *
+ * Flushing the stream, e.g. at a t:flush element, performs a sync flush, so that everything written so
+ * far can be decompressed by the client right away. Deflaters are pooled and reused between renders,
+ * as creating one is far more expensive than compressing a typical page. Closing the stream finishes the
+ * compressed data and returns the deflater to the pool, but leaves the underlying stream open.
+ */
+public class CompressingOutputStream extends DeflaterOutputStream
+{
+    private static final int maxPooled = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final ConcurrentLinkedQueue<Deflater> gzipPool = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<Deflater> zlibPool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger gzipPoolSize = new AtomicInteger();
+    private static final AtomicInteger zlibPoolSize = new AtomicInteger();
+
+    private static final byte[] gzipHeader = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final boolean gzip;
+    private final CRC32 crc;
+    private boolean finished = false;
+    private boolean closed = false;
+
+    /**
+     * @param out The stream to write the compressed output to
+     * @param compression The format to compress in
+     * @param level The compression level, from 0 to 9, or -1 for the default level
+     * @param dictionary The preset dictionary, only used by {@link Compression#DEFLATE_WITH_DICTIONARY}
+     * @throws IOException
+     */
+    public CompressingOutputStream (OutputStream out, Compression compression, int level, byte[] dictionary) throws IOException
+    {
+        super(out, acquire(compression == Compression.GZIP, level), 8192, true);
+
+        this.gzip = compression == Compression.GZIP;
+        this.crc = gzip ? new CRC32() : null;
+
+        if(gzip)
+        {
+            out.write(gzipHeader);
+        }
+        else if(compression == Compression.DEFLATE_WITH_DICTIONARY && dictionary != null && dictionary.length > 0)
+        {
+            def.setDictionary(dictionary);
+        }
+    }
+
+    @Override
+    public void write (byte[] b, int off, int len) throws IOException
+    {
+        super.write(b, off, len);
+
+        if(gzip)
+        {
+            crc.update(b, off, len);
+        }
+    }
+
+    @Override
+    public void finish () throws IOException
+    {
+        if(finished)
+        {
+            return;
+        }
+
+        super.finish();
+        finished = true;
+
+        if(gzip)
+        {
+            writeInt((int) crc.getValue());
+            writeInt(def.getTotalIn());
+        }
+    }
+
+    @Override
+    public void close () throws IOException
+    {
+        if(closed)
+        {
+            return;
+        }
+
+        closed = true;
+
+        try
+        {
+            finish();
+            out.flush();
+        }
+        finally
+        {
+            release(gzip, def);
+        }
+    }
+
+    private void writeInt (int i) throws IOException
+    {
+        out.write(i & 0xff);
+        out.write((i >> 8) & 0xff);
+        out.write((i >> 16) & 0xff);
+        out.write((i >> 24) & 0xff);
+    }
+
+    private static Deflater acquire (boolean gzip, int level)
+    {
+        Deflater deflater = (gzip ? gzipPool : zlibPool).poll();
+
+        if(deflater == null)
+        {
+            return new Deflater(level, gzip);
+        }
+
+        (gzip ? gzipPoolSize : zlibPoolSize).decrementAndGet();
+        deflater.setLevel(level);
+
+        return deflater;
+    }
+
+    private static void release (boolean gzip, Deflater deflater)
+    {
+        AtomicInteger size = gzip ? gzipPoolSize : zlibPoolSize;
+
+        if(size.incrementAndGet() > maxPooled)
+        {
+            size.decrementAndGet();
+            deflater.end();
+            return;
+        }
+
+        deflater.reset();
+        (gzip ? gzipPool : zlibPool).offer(deflater);
+    }
+}
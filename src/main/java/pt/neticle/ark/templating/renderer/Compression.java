@@ -0,0 +1,25 @@
+package pt.neticle.ark.templating.renderer;
+
+/**
+ * Formats in which the engine can compress rendered output.
+ */
+public enum Compression
+{
+    /**
+     * A gzip stream, for the "gzip" content-encoding.
+     */
+    GZIP,
+
+    /**
+     * A zlib stream, for the "deflate" content-encoding.
+     */
+    DEFLATE,
+
+    /**
+     * A zlib stream using the static content of the template as a preset dictionary. Small outputs compress
+     * considerably better, but the reader must be given the same dictionary, see
+     * {@link pt.neticle.ark.templating.TemplatingEngine#getCompressionDictionary}. Meant for consumers under
+     * our control, such as caches or other services, since browsers don't support preset dictionaries.
+     */
+    DEFLATE_WITH_DICTIONARY
+}
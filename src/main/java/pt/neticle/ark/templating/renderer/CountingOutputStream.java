@@ -0,0 +1,37 @@
+package pt.neticle.ark.templating.renderer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Keeps track of how many bytes were written to the underlying stream.
+ */
+public class CountingOutputStream extends FilterOutputStream
+{
+    private long count = 0;
+
+    public CountingOutputStream (OutputStream out)
+    {
+        super(out);
+    }
+
+    @Override
+    public void write (int b) throws IOException
+    {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write (byte[] b, int off, int len) throws IOException
+    {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    public long getCount ()
+    {
+        return count;
+    }
+}
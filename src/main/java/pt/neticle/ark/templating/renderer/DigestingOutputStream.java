@@ -0,0 +1,60 @@
+package pt.neticle.ark.templating.renderer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Computes a 64-bit FNV-1a hash of all bytes written to the underlying stream, as they're written.
+ */
+public class DigestingOutputStream extends CountingOutputStream
+{
+    private static final long offsetBasis = 0xcbf29ce484222325L;
+    private static final long prime = 0x100000001b3L;
+
+    private long digest = offsetBasis;
+
+    public DigestingOutputStream (OutputStream out)
+    {
+        super(out);
+    }
+
+    @Override
+    public void write (int b) throws IOException
+    {
+        super.write(b);
+        digest = (digest ^ (b & 0xff)) * prime;
+    }
+
+    @Override
+    public void write (byte[] b, int off, int len) throws IOException
+    {
+        super.write(b, off, len);
+        digest = update(digest, b, off, len);
+    }
+
+    public long getDigest ()
+    {
+        return digest;
+    }
+
+    /**
+     * Computes the same digest this stream would for the given content.
+     *
+     * @param b
+     * @return
+     */
+    public static long digest (byte[] b)
+    {
+        return update(offsetBasis, b, 0, b.length);
+    }
+
+    private static long update (long digest, byte[] b, int off, int len)
+    {
+        for(int i = off, end = off + len; i < end; i++)
+        {
+            digest = (digest ^ (b[i] & 0xff)) * prime;
+        }
+
+        return digest;
+    }
+}
@@ -7,20 +7,58 @@ import java.util.Map;
 
 public class InternalScope implements Scope
 {
-    private final Scope parent;
+    private Scope parent;
     private final Map<String, Object> data;
-    private final Map<Expression, Object> evaluatedExpressions;
+    /**
+     * Created when the first expression is evaluated within this scope.
+     */
+    private Map<Expression, Object> evaluatedExpressions;
+    private final RenderContext context;
+
+    /**
+     * Whether this is the outermost scope of a render, which memoized results aren't shared beyond.
+     */
+    private boolean renderRoot;
 
     public InternalScope (Scope parent)
     {
         this(parent, new HashMap<>());
     }
 
+    /**
+     * @param parent The parent scope
+     * @param expectedSize The amount of variables expected to be put in this scope, which small scopes are
+     *                     optimized for
+     */
+    public InternalScope (Scope parent, int expectedSize)
+    {
+        this(parent, expectedSize <= SmallMap.maxCapacity ? new SmallMap(expectedSize) : new HashMap<>());
+    }
+
+    /**
+     * Creates the outermost scope of a render, as a child of the scope given by the caller.
+     *
+     * @param parent The scope given by the caller
+     * @param context The context of the render this scope is being created for, inherited by any
+     *                child scopes, or null if nothing needs to keep track of it
+     */
+    public InternalScope (Scope parent, RenderContext context)
+    {
+        this(parent, new HashMap<>(), context);
+        this.renderRoot = true;
+    }
+
     protected InternalScope (Scope parent, Map<String, Object> data)
+    {
+        this(parent, data, parent instanceof InternalScope ? ((InternalScope) parent).context : null);
+    }
+
+    private InternalScope (Scope parent, Map<String, Object> data, RenderContext context)
     {
         this.parent = parent;
         this.data = data;
-        this.evaluatedExpressions = new HashMap<>();
+        this.evaluatedExpressions = null;
+        this.context = context;
     }
 
     public void put (String key, Object value)
@@ -51,24 +89,115 @@ public class InternalScope implements Scope
         return data.getOrDefault(key, parent != null ? parent.get(key) : null);
     }
 
+    public RenderContext getContext ()
+    {
+        return context;
+    }
+
+    /**
+     * Evaluates an expression, reusing its result if it was already evaluated within this render.
+     *
+     * Results are memoized by the scope that binds the variables the expression reads: the closest scope
+     * defining any of them, or the outermost scope of the render if none does. Nested scopes that don't
+     * redefine those variables, such as those of other templates or of iterations, share that result,
+     * while a scope that shadows one of them evaluates the expression on its own. Scopes given by the
+     * caller are never written to, so results don't outlive the render.
+     *
+     * Expressions calling functions are only memoized by the scope evaluating them, as nothing tells
+     * whether a function gives the same result in other scopes.
+     *
+     * @param expr
+     * @return
+     */
     @Override
     public Object evaluate (Expression expr)
     {
-        if(evaluatedExpressions.containsKey(expr))
+        if(evaluatedExpressions == null)
+        {
+            evaluatedExpressions = new HashMap<>();
+        }
+
+        Object r = evaluatedExpressions.get(expr);
+
+        if(r != null || evaluatedExpressions.containsKey(expr))
         {
-            return evaluatedExpressions.get(expr);
+            if(context != null)
+            {
+                context.getListener().expressionMemoHit();
+            }
+
+            return r;
         }
 
-        final Object r = expr.getResolver().apply(this);
+        final InternalScope binding = expr.isMemoizable() ? bindingScope(expr.getReferencedNames()) : this;
+
+        if(binding != this)
+        {
+            r = binding.evaluate(expr);
+            evaluatedExpressions.put(expr, r);
+
+            return r;
+        }
+
+        if(context != null)
+        {
+            context.getListener().expressionEvaluated();
+        }
+
+        r = expr.getResolver().apply(this);
         evaluatedExpressions.put(expr, r);
 
         return r;
     }
 
+    /**
+     * Finds the scope in which an expression reading the given variables resolves all of them the same
+     * way it does in this scope.
+     */
+    private InternalScope bindingScope (String[] names)
+    {
+        InternalScope current = this;
+
+        while(true)
+        {
+            for(String name : names)
+            {
+                if(current.data.containsKey(name))
+                {
+                    return current;
+                }
+            }
+
+            if(current.renderRoot || !(current.parent instanceof InternalScope))
+            {
+                return current;
+            }
+
+            current = (InternalScope) current.parent;
+        }
+    }
+
+    /**
+     * Resets this scope and makes it the outermost scope of another render, as a child of the scope given
+     * by the caller, so that it can be reused instead of creating a new one.
+     *
+     * @param parent
+     */
+    public void rebind (Scope parent)
+    {
+        reset();
+        this.parent = parent;
+        this.renderRoot = true;
+    }
+
     @Override
     public void reset ()
     {
         data.clear();
-        evaluatedExpressions.clear();
+
+        if(evaluatedExpressions != null)
+        {
+            evaluatedExpressions.clear();
+        }
     }
 }
@@ -2,97 +2,176 @@ package pt.neticle.ark.templating.renderer;
 
 import pt.neticle.ark.templating.TemplatingEngine;
 import pt.neticle.ark.templating.exception.RenderingException;
+import pt.neticle.ark.templating.jfr.TemplateRenderEvent;
 import pt.neticle.ark.templating.processing.*;
 import pt.neticle.ark.templating.structure.TemplateExpressionText;
-import pt.neticle.ark.templating.structure.TemplateRootElement;
 import pt.neticle.ark.templating.structure.expressions.Expression;
+import pt.neticle.ark.templating.structure.expressions.Truthiness;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 /**
  * Renders output based on a given instruction set.
  */
 public class PreprocessedRenderer
 {
-    private final PreprocessedRenderer parent;
     private final TemplatingEngine engine;
+    private final Truthiness truthiness;
     private Scope scope;
     private final OutputStream ostream;
-    private final Map<String, List<Instruction>> preprocessedSlotMembers;
+    private final Map<String, Program> slotPrograms;
+    private final RenderContext context;
+
+    /**
+     * The iterations of foreach templates in progress, innermost first, created when first needed.
+     */
+    private Deque<Iteration> iterations;
+
+    /**
+     * The renderer whose slot members are expanded by the slot elements currently being rendered. This is
+     * the renderer itself, except while rendering slotted content, which belongs to the template that
+     * declared it and so expands that template's slots instead.
+     */
+    private PreprocessedRenderer slotOwner;
+
+    /**
+     * The slot owner of the renderer that expanded this template, in effect while this template's slotted
+     * content is rendered.
+     */
+    private final PreprocessedRenderer callerSlotOwner;
 
     public PreprocessedRenderer (TemplatingEngine engine, PreprocessedInstructionSet instructionSet,
                                  Scope scope, OutputStream os,
                                  Map<String, List<Instruction>> preprocessedSlotMembers)
     {
-        this(null, engine, instructionSet, scope, os, preprocessedSlotMembers);
+        this(engine, instructionSet, scope, os, preprocessedSlotMembers, null);
+    }
+
+    /**
+     * @param context The context of the render, or null if nothing needs to keep track of it
+     */
+    public PreprocessedRenderer (TemplatingEngine engine, PreprocessedInstructionSet instructionSet,
+                                 Scope scope, OutputStream os,
+                                 Map<String, List<Instruction>> preprocessedSlotMembers,
+                                 RenderContext context)
+    {
+        this(null, engine, instructionSet, scope, os, Program.compileSlots(preprocessedSlotMembers), context);
     }
 
     private PreprocessedRenderer (PreprocessedRenderer parent, TemplatingEngine engine, PreprocessedInstructionSet instructionSet,
                                  Scope scope, OutputStream os,
-                                 Map<String, List<Instruction>> preprocessedSlotMembers)
+                                 Map<String, Program> slotPrograms, RenderContext context)
     {
-        this(parent, engine, scope, os, instructionSet.getRoot(), preprocessedSlotMembers);
+        this(parent, engine, scope, os,
+            parent == null && instructionSet.isStatic() ? null : instructionSet.getRoot(),
+            slotPrograms, context);
+
+        if(parent == null && instructionSet.isStatic())
+        {
+            // The whole output was rendered once already, rendering it again is a single write
+            write(instructionSet.getStaticOutput());
+        }
     }
 
 
     private PreprocessedRenderer (PreprocessedRenderer parent, TemplatingEngine engine,
                                  Scope scope, OutputStream os, Instruction instruction,
-                                 Map<String, List<Instruction>> preprocessedSlotMembers)
+                                 Map<String, Program> slotPrograms, RenderContext context)
     {
-        this.parent = parent;
         this.engine = engine;
+        this.truthiness = engine.getExpressionMatcher().getTruthiness();
         this.scope = scope;
         this.ostream = os;
-        this.preprocessedSlotMembers = preprocessedSlotMembers;
+        this.slotPrograms = slotPrograms;
+        this.context = context;
+        this.slotOwner = this;
+        this.callerSlotOwner = parent != null ? parent.slotOwner : null;
 
         if(instruction != null)
         {
-            accept(instruction);
+            execute(instruction.getProgram());
         }
     }
 
-    private void accept (Instruction instruction)
+    /**
+     * Runs a compiled chain of instructions.
+     */
+    private void execute (Program program)
     {
-        Instruction current = instruction;
-        while(current != null)
+        final int[] code = program.getCode();
+        final Object[] operands = program.getOperands();
+        final int size = program.size();
+
+        int i = 0;
+
+        while(i < size)
         {
-            visit(current);
-            current = current.getNext();
+            switch(code[i << 1])
+            {
+                case Program.WRITE:
+                    write((byte[]) operands[i]);
+                    break;
+                case Program.OUTPUT:
+                    visitExpressionResultOutputInst((ExpressionResultOutputInstruction) operands[i]);
+                    break;
+                case Program.SLOT:
+                    visitExpandSlotInst((ExpandSlotInstruction) operands[i]);
+                    break;
+                case Program.EXPAND:
+                    visitExpandTemplateInst((ExpandTemplateInstruction) operands[i]);
+                    break;
+                case Program.FOREACH:
+                    i = beginIteration((ExpandTemplateInstruction) operands[i], i + 1, code[(i << 1) + 1]);
+                    continue;
+                case Program.NEXT:
+                    i = nextIteration();
+                    continue;
+                case Program.FLUSH:
+                    visitFlushInst();
+                    break;
+                case Program.JUMP:
+                    i = code[(i << 1) + 1];
+                    continue;
+                case Program.JUMP_UNLESS:
+                    if(!((Expression) operands[i]).evaluateBoolean(scope, truthiness))
+                    {
+                        i = code[(i << 1) + 1];
+                        continue;
+                    }
+                    break;
+                case Program.JUMP_UNLESS_FOREACH:
+                    if(!"foreach".equals(getFlattenedSegments(((ExpandTemplateInstruction) operands[i]).getAttributes().get("is"))))
+                    {
+                        i = code[(i << 1) + 1];
+                        continue;
+                    }
+                    break;
+            }
+
+            i++;
         }
     }
 
-    private void visit (Instruction instruction)
+    private void write (byte[] bytes)
     {
-        switch(instruction.getType())
-        {
-            case RAW_OUTPUT:
-                visitRawOutputInst((RawOutputInstruction) instruction);
-                break;
-            case EXPRESSION_RESULT_OUTPUT:
-                visitExpressionResultOutputInst((ExpressionResultOutputInstruction) instruction);
-                break;
-            case EXPAND_SLOT:
-                visitExpandSlotInst((ExpandSlotInstruction) instruction);
-                break;
-            case EXPAND_INNER_TEMPLATE:
-                break;
-            case EXPAND_TEMPLATE:
-                visitExpandTemplateInst((ExpandTemplateInstruction) instruction);
-                break;
+        try
+        {
+            ostream.write(bytes);
+        } catch(IOException e)
+        {
+            throw new RenderingException(e);
         }
     }
 
-    private void visitRawOutputInst (RawOutputInstruction inst)
+    private void visitFlushInst ()
     {
         try
         {
-            ostream.write(inst.getContent().getBytes(StandardCharsets.UTF_8));
+            ostream.flush();
         } catch(IOException e)
         {
             throw new RenderingException(e);
@@ -118,40 +197,110 @@ public class PreprocessedRenderer
 
     private void visitExpandSlotInst (ExpandSlotInstruction inst)
     {
-        if(preprocessedSlotMembers == null && parent != null)
-        {
-            // If we're in a nested renderer that has no slotMember information, it means
-            // a slot was passed within a slot, and so, the parent if available, should try
-            // to render it.
+        final PreprocessedRenderer owner = slotOwner;
+        final Program members = owner != null ? owner.slotPrograms.get(inst.getSlotKey()) : null;
 
-            parent.visitExpandSlotInst(inst);
+        if(members == null)
+        {
             return;
         }
 
-        final String slotName = inst.isUnassignedSlot() ? "@unassigned" : inst.getSlotName();
+        // Slotted content is rendered in place, with the scope of the template it's slotted into, while any
+        // slots within it, passed on from the template that declared it, expand the slots of its caller.
+
+        final Scope originalScope = scope;
+        scope = owner.scope;
+        slotOwner = owner.callerSlotOwner;
 
-        if(preprocessedSlotMembers.containsKey(slotName))
+        try
+        {
+            execute(members);
+        }
+        finally
         {
-            final PreprocessedRenderer pr = new PreprocessedRenderer(parent, engine, scope, ostream, null, null);
-            preprocessedSlotMembers.get(slotName).stream()
-            .forEach(pr::accept);
+            scope = originalScope;
+            slotOwner = owner;
         }
     }
 
     private void visitExpandTemplateInst (ExpandTemplateInstruction inst)
     {
-        if(inst.getTemplateName().equals("template"))
+        // Inner templates are compiled into their own operations, see Program
+
+        final byte[] staticOutput = inst.getStaticOutput();
+
+        if(staticOutput != null && context == null)
+        {
+            // Neither the template nor its slotted content depend on the scope, so there's no need for one
+            write(staticOutput);
+            return;
+        }
+
+        final InternalScope newScope = staticOutput == null ? createScope(inst) : null;
+
+        PreprocessedInstructionSet instructionSet = inst.getLinkedInstructionSet();
+
+        if(instructionSet == null)
+        {
+            // Its template wasn't prepared yet when this expansion was pre-processed
+            instructionSet = inst.getTemplate().getInstructionSet();
+
+            if(instructionSet == null)
+            {
+                throw new RenderingException("Template " + inst.getTemplate().getTemplateName() +
+                    " has not been pre-processed");
+            }
+
+            inst.link(instructionSet);
+        }
+
+        if(context == null)
         {
-            // if the template is an inner-template, we have special handlers for that...
-            visitExpandInnerTemplateInst(inst);
+            // Fire up a new sub-renderer with the resolved template's instruction set
+            new PreprocessedRenderer(this, engine, instructionSet, newScope, ostream, inst.getSlotPrograms(), null);
             return;
         }
 
-        final InternalScope newScope = new InternalScope(scope);
+        final TemplateRenderEvent event = context.isFlightRecording() ? new TemplateRenderEvent() : null;
+        final long start = System.nanoTime();
+        final long startBytes = context.getBytesWritten();
+        final long startIterations = context.getIterations();
+
+        if(event != null)
+        {
+            event.begin();
+        }
+
+        if(staticOutput != null)
+        {
+            write(staticOutput);
+        }
+        else
+        {
+            new PreprocessedRenderer(this, engine, instructionSet, newScope, ostream, inst.getSlotPrograms(), context);
+        }
+
+        final long bytes = context.getBytesWritten() - startBytes;
+
+        context.getListener().templateRendered(inst.getTemplateName(), true, System.nanoTime() - start, bytes);
+
+        if(event != null)
+        {
+            event.set(inst.getTemplateName(), true, bytes, context.getIterations() - startIterations);
+            event.commit();
+        }
+    }
+
+    /**
+     * Creates the scope of a template expansion, with the attributes passed to the template.
+     */
+    private InternalScope createScope (ExpandTemplateInstruction inst)
+    {
+        final Map<String, List<TemplateExpressionText.Segment>> attributes = inst.getAttributes();
+        final InternalScope newScope = new InternalScope(scope, attributes.size());
 
         // Grab the attributes from the expand-template instruction
-        inst.getAttributes().entrySet().stream()
-        .forEach(e ->
+        for(Map.Entry<String, List<TemplateExpressionText.Segment>> e : attributes.entrySet())
         {
             // Attributes are passed pre-resolved
 
@@ -185,60 +334,73 @@ public class PreprocessedRenderer
 
                 newScope.put(e.getKey(), s);
             }
-        });
-
-        // Fire up a new sub-renderer with the resolved template's instruction set
-        new PreprocessedRenderer(
-            this,
-            engine,
-            ((TemplateRootElement) engine.getTemplate(inst.getTemplateName())).getInstructionSet(),
-            newScope,
-            ostream,
-            inst.getPreprocessedSlotMembers()
-        );
+        }
+
+        return newScope;
     }
 
-    private void visitExpandInnerTemplateInst (ExpandTemplateInstruction inst)
+    /**
+     * The state of a foreach template being iterated.
+     */
+    private static final class Iteration
     {
-        Expression ifExpr;
-
-        // All inner-templates containing an "if" attribute are first evaluated and then handled.
+        private final Iterator<?> items;
+        private final InternalScope scope;
+        private final Scope outerScope;
+        private final String as;
+        private final String loop;
+
+        /**
+         * Where the repeated operations start, and where the empty slot does, preceded by a jump past it.
+         */
+        private final int body;
+        private final int empty;
+
+        private int count = 0;
+
+        private Iteration (Iterator<?> items, InternalScope scope, Scope outerScope, String as, String loop,
+                           int body, int empty)
+        {
+            this.items = items;
+            this.scope = scope;
+            this.outerScope = outerScope;
+            this.as = as;
+            this.loop = loop;
+            this.body = body;
+            this.empty = empty;
+        }
 
-        if(inst.getAttributes().containsKey("if") &&
-            (ifExpr = getExpressionIfSingleSegment(inst.getAttributes().get("if"))) != null)
+        /**
+         * Puts the next item in the iteration scope, if there's one.
+         */
+        private boolean advance ()
         {
-            if(!Boolean.valueOf(scope.evaluate(ifExpr).toString()))
+            if(!items.hasNext())
             {
-                // If the expression evaluated to false, we'll display the content of the "else" slot,
-                // if available, and stop execution here.
-                inst.getPreprocessedSlotMembers().get("else").stream()
-                    .forEach(this::accept);
-                return;
+                return false;
             }
-        }
 
-        if(inst.getAttributes().containsKey("is"))
-        {
-            // Depending on what the inner-template is, we'll find an handler for it.
-            String is = getFlattenedSegments(inst.getAttributes().get("is"));
+            scope.put(as, items.next());
 
-            if(is.equals("foreach"))
+            if(loop != null)
             {
-                handleForeachTemplate(inst);
-                return;
+                scope.put(loop, new ForeachIterationInfo(count + 1, count == 0, !items.hasNext()));
             }
-        }
-        else
-        {
-            // If the inner-template isn't of any type and since, if we reached here, it means the if
-            // clause evaluated as true, we render the unassigned slotted content.
 
-            inst.getPreprocessedSlotMembers().get("@unassigned").stream()
-                .forEach(this::accept);
+            return true;
         }
     }
 
-    private void handleForeachTemplate (ExpandTemplateInstruction inst)
+    /**
+     * Starts iterating over the data of a foreach template. Instead of creating sub-renderers for each item,
+     * this renderer's scope is swapped for one holding the current item, a child of the current scope so
+     * that variables defined outside of the foreach template remain accessible.
+     *
+     * @param body Where the operations repeated for each item start
+     * @param empty Where the content of the empty slot starts
+     * @return Where to continue
+     */
+    private int beginIteration (ExpandTemplateInstruction inst, int body, int empty)
     {
         // ForEach templates require a data attribute with an expression resolving to an iterable object
 
@@ -255,96 +417,76 @@ public class PreprocessedRenderer
 
         final Object result = scope.evaluate(dataExpr);
 
-        final Instruction repeatable = inst.getPreprocessedSlotMembers().get("@unassigned").stream()
-            .findFirst()
-            .orElse(null);
+        final List<Instruction> repeatable = inst.getPreprocessedSlotMembers().get("@unassigned");
 
-        if(result == null || repeatable == null)
+        if(result == null || repeatable == null || repeatable.isEmpty())
         {
             // When empty, we display slotted content from the "empty" slot, if any.
-            inst.getPreprocessedSlotMembers().get("empty").stream()
-                .forEach(this::accept);
-            return;
+            return empty;
         }
 
-        final Stream<Object> results;
+        final Iterator<?> items;
 
         // The result of the data expression must either be an Iterable or an array
         if(result instanceof Iterable)
         {
-            results = StreamSupport.stream(((Iterable<Object>) result).spliterator(), false);
+            items = ((Iterable<?>) result).iterator();
         }
         else if(result instanceof Object[])
         {
-            results = Arrays.stream((Object[]) result);
+            items = Arrays.asList((Object[]) result).iterator();
         } else
         {
             throw new RenderingException("Unable to iterate over data of type " + result.getClass().getName() + " provided in the data attribute. " + result);
         }
 
-        // TODO: Check for any negative implications of this, and possibly replace it with something else if so.
-        final Integer[] totalIterated = {0}; // hack: defined like this to be able to change it from within a lambda
+        final Iteration iteration = new Iteration(items, new InternalScope(scope, loop == null ? 1 : 2), scope,
+            as, loop, body, empty);
 
-        // Instead of creating sub-renderers for this, we'll use current one but swap the scope temporarily
-        // Save current scope here so we can come back to it.
-        final Scope originalScope = scope;
-
-        // we're making the inner scope a child of the current scope, so we can access variables defined outside
-        // the for-each block
-        final InternalScope newScope = new InternalScope(scope);
-        scope = newScope;
-
-        if(loop == null)
+        if(!iteration.advance())
         {
-            // If we dont have to provide loop information we can just consume the stream like this
-
-            results.forEach((o) ->
-            {
-                // current item is supplied in the inner scope with the specified "as" name
-                newScope.put(as, o);
-
-                accept(repeatable);
-
-                totalIterated[0]++;
-
-                newScope.reset();
-            });
+            return empty;
         }
-        else
+
+        if(iterations == null)
         {
-            // Basically the same thing but with an iterator because we need some extra info to populate the
-            // loop information object
+            iterations = new ArrayDeque<>();
+        }
 
-            Iterator<Object> it = results.iterator();
-            totalIterated[0]++;
-            while(it.hasNext())
-            {
-                Object o = it.next();
+        iterations.push(iteration);
+        scope = iteration.scope;
 
-                newScope.put(as, o);
-                newScope.put(loop, new ForeachIterationInfo(totalIterated[0], totalIterated[0] == 0, !it.hasNext()));
+        return body;
+    }
 
-                accept(repeatable);
+    /**
+     * Moves the innermost iteration to its next item.
+     *
+     * @return Where to continue: the start of the repeated operations if there's another item, otherwise
+     * the jump past the empty slot, restoring the scope the iteration started with
+     */
+    private int nextIteration ()
+    {
+        final Iteration iteration = iterations.peek();
 
-                totalIterated[0]++;
+        iteration.count++;
 
-                newScope.reset();
-            }
+        if(context != null)
+        {
+            context.iterated();
         }
 
-        // Restore original scope after all is rendered
-        scope = originalScope;
+        iteration.scope.reset();
 
-        if(totalIterated[0] == 0)
+        if(iteration.advance())
         {
-            // If we didn't render anything, display contents of "empty" slot
+            return iteration.body;
+        }
 
-            // This is done in the end because we can't know the size of a stream/iterable without
-            // consuming/iterating it.
+        iterations.pop();
+        scope = iteration.outerScope;
 
-            inst.getPreprocessedSlotMembers().get("empty").stream()
-                .forEach((i) -> accept(i));
-        }
+        return iteration.empty - 1;
     }
 
     /**
@@ -0,0 +1,63 @@
+package pt.neticle.ark.templating.renderer;
+
+import pt.neticle.ark.templating.metrics.RenderListener;
+
+/**
+ * State shared by everything involved in a single render call: the renderers of all nested templates
+ * and every scope created along the way.
+ *
+ * A context only exists when there is something to keep track of, renders that don't need one simply
+ * pass null around.
+ */
+public final class RenderContext
+{
+    private static final RenderListener noListener = new RenderListener() {};
+
+    private final RenderListener listener;
+    private final CountingOutputStream counter;
+    private final boolean flightRecording;
+    private long iterations = 0;
+
+    /**
+     * @param listener The listener to notify, may be null
+     * @param counter The stream the render writes to, used to find out how many bytes each template wrote
+     * @param flightRecording Whether render events are to be emitted for the Java Flight Recorder
+     */
+    public RenderContext (RenderListener listener, CountingOutputStream counter, boolean flightRecording)
+    {
+        this.listener = listener != null ? listener : noListener;
+        this.counter = counter;
+        this.flightRecording = flightRecording;
+    }
+
+    /**
+     * @return The listener to notify, never null
+     */
+    public RenderListener getListener ()
+    {
+        return listener;
+    }
+
+    public boolean isFlightRecording ()
+    {
+        return flightRecording;
+    }
+
+    public long getBytesWritten ()
+    {
+        return counter.getCount();
+    }
+
+    /**
+     * @return Total amount of foreach iterations performed so far
+     */
+    public long getIterations ()
+    {
+        return iterations;
+    }
+
+    void iterated ()
+    {
+        iterations++;
+    }
+}
@@ -0,0 +1,72 @@
+package pt.neticle.ark.templating.renderer;
+
+/**
+ * Describes the output of a render, as returned by
+ * {@link pt.neticle.ark.templating.TemplatingEngine#renderWithDigest}.
+ */
+public class RenderResult
+{
+    private final long bytesWritten;
+    private final long digest;
+
+    public RenderResult (long bytesWritten, long digest)
+    {
+        this.bytesWritten = bytesWritten;
+        this.digest = digest;
+    }
+
+    /**
+     * @return The amount of bytes rendered
+     */
+    public long getBytesWritten ()
+    {
+        return bytesWritten;
+    }
+
+    /**
+     * @return The 64-bit FNV-1a hash of the rendered bytes
+     */
+    public long getDigest ()
+    {
+        return digest;
+    }
+
+    /**
+     * @return The digest as a strong entity tag, including the quotes, e.g. "\"cbf29ce484222325\""
+     */
+    public String getETag ()
+    {
+        StringBuilder sb = new StringBuilder(18).append('"');
+        String hex = Long.toHexString(digest);
+
+        for(int i = hex.length(); i < 16; i++)
+        {
+            sb.append('0');
+        }
+
+        return sb.append(hex).append('"').toString();
+    }
+
+    @Override
+    public boolean equals (Object o)
+    {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+
+        RenderResult that = (RenderResult) o;
+
+        return bytesWritten == that.bytesWritten && digest == that.digest;
+    }
+
+    @Override
+    public int hashCode ()
+    {
+        return 31 * Long.hashCode(bytesWritten) + Long.hashCode(digest);
+    }
+
+    @Override
+    public String toString ()
+    {
+        return "RenderResult[" + bytesWritten + " bytes, " + getETag() + "]";
+    }
+}
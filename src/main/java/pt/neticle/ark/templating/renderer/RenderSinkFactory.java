@@ -0,0 +1,23 @@
+package pt.neticle.ark.templating.renderer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Provides the output stream each item of a batch render is written to, see
+ * {@link pt.neticle.ark.templating.TemplatingEngine#renderBatch}.
+ */
+@FunctionalInterface
+public interface RenderSinkFactory
+{
+    /**
+     * Opens the stream for an item, once it has been rendered. The stream is closed after the output of the
+     * item has been written to it. May be called from several threads at once.
+     *
+     * @param index The position of the item in the batch, starting at 0
+     * @param scope The scope the item was rendered with
+     * @return
+     * @throws IOException
+     */
+    OutputStream open (long index, Scope scope) throws IOException;
+}
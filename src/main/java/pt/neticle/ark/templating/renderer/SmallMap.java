@@ -0,0 +1,163 @@
+package pt.neticle.ark.templating.renderer;
+
+import java.util.*;
+
+/**
+ * A map for the few variables a scope usually holds, such as the attributes passed to a template, kept in
+ * arrays that are scanned in order rather than hashed into buckets.
+ *
+ * Keys are compared by identity before their hashes and contents. Names are interned when templates are
+ * pre-processed, so lookups of names taken from templates usually match on the first comparison.
+ */
+final class SmallMap extends AbstractMap<String, Object>
+{
+    /**
+     * The largest amount of entries this map is meant for, beyond which scanning is slower than hashing.
+     */
+    static final int maxCapacity = 8;
+
+    private String[] keys;
+    private int[] hashes;
+    private Object[] values;
+    private int size = 0;
+
+    SmallMap (int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    private int indexOf (Object key)
+    {
+        for(int i = 0; i < size; i++)
+        {
+            if(keys[i] == key)
+            {
+                return i;
+            }
+        }
+
+        if(!(key instanceof String))
+        {
+            return -1;
+        }
+
+        final int hash = key.hashCode();
+
+        for(int i = 0; i < size; i++)
+        {
+            if(hashes[i] == hash && keys[i].equals(key))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public Object get (Object key)
+    {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public Object getOrDefault (Object key, Object defaultValue)
+    {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    @Override
+    public boolean containsKey (Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object put (String key, Object value)
+    {
+        int index = indexOf(key);
+
+        if(index >= 0)
+        {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        if(size == keys.length)
+        {
+            int capacity = keys.length * 2;
+
+            keys = Arrays.copyOf(keys, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        keys[size] = key;
+        hashes[size] = key.hashCode();
+        values[size] = value;
+        size++;
+
+        return null;
+    }
+
+    @Override
+    public int size ()
+    {
+        return size;
+    }
+
+    @Override
+    public void clear ()
+    {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet ()
+    {
+        return new AbstractSet<Entry<String, Object>>()
+        {
+            @Override
+            public Iterator<Entry<String, Object>> iterator ()
+            {
+                return new Iterator<Entry<String, Object>>()
+                {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext ()
+                    {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next ()
+                    {
+                        if(next >= size)
+                        {
+                            throw new NoSuchElementException();
+                        }
+
+                        int index = next++;
+                        return new SimpleImmutableEntry<>(keys[index], values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size ()
+            {
+                return size;
+            }
+        };
+    }
+}
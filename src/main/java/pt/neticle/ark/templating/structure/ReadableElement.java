@@ -40,6 +40,15 @@ public interface ReadableElement extends Node
 
     boolean hasAttribute (String qualifiedName);
 
+    /**
+     * @return Whether the content of this element was read as plain text, as is the case for script
+     * elements and elements declared with the text-content attribute
+     */
+    default boolean isTextContent ()
+    {
+        return "script".equals(getTagName());
+    }
+
     List<Node> getChilds ();
 
     default Stream<Node> childs ()
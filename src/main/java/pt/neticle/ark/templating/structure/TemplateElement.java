@@ -11,6 +11,7 @@ public class TemplateElement extends TemplateNode implements Element
     private final HashMap<String, Attribute> attributes;
     private final List<Node> childs;
     private TemplateElement parent = null;
+    private boolean textContent = false;
 
     TemplateElement (TemplateRootElement templateRoot, String qualifiedName)
     {
@@ -70,6 +71,17 @@ public class TemplateElement extends TemplateNode implements Element
         childs.add(text);
     }
 
+    public final void setTextContent (boolean textContent)
+    {
+        this.textContent = textContent;
+    }
+
+    @Override
+    public boolean isTextContent ()
+    {
+        return textContent || Element.super.isTextContent();
+    }
+
     @Override
     public final String getTagName ()
     {
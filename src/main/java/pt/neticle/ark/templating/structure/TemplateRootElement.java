@@ -1,11 +1,18 @@
 package pt.neticle.ark.templating.structure;
 
 import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.exception.ParsingException;
+import pt.neticle.ark.templating.jfr.FlightRecorderSupport;
+import pt.neticle.ark.templating.jfr.TemplatePrepareEvent;
+import pt.neticle.ark.templating.parsing.TemplateParser;
 import pt.neticle.ark.templating.processing.PreprocessedInstructionSet;
 import pt.neticle.ark.templating.structure.expressions.Expression;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.Function;
 
 public class TemplateRootElement extends TemplateElement
 {
@@ -14,7 +21,20 @@ public class TemplateRootElement extends TemplateElement
     private final Map<String, String> metaData;
     private final TemplatingEngine engine;
     private ReadableElement catchUnassignedSlot = null;
-    private PreprocessedInstructionSet instructionSet;
+    private volatile PreprocessedInstructionSet instructionSet;
+
+    /**
+     * The declaration this template was parsed from, kept when the engine releases the DOM of templates
+     * once they're pre-processed, so that it can be parsed again when the template has to be re-processed.
+     */
+    private byte[] source = null;
+    private TemplateParser sourceParser = null;
+    private volatile boolean domReleased = false;
+
+    /**
+     * Whether the instruction set is prepared when first requested, for templates loaded lazily.
+     */
+    private boolean preparedOnDemand = false;
 
     public TemplateRootElement (TemplatingEngine engine)
     {
@@ -30,7 +50,117 @@ public class TemplateRootElement extends TemplateElement
 
     public void prepare ()
     {
-        instructionSet = new PreprocessedInstructionSet(engine, this);
+        final PreprocessedInstructionSet result = preprocess(engine::lookupTemplate);
+
+        // Templates that aren't prepared yet are linked when first expanded
+        result.link(t -> t == this ? result : t.instructionSet);
+
+        instructionSet = result;
+        releaseDomIfPossible();
+    }
+
+    /**
+     * Builds a new instruction set for this template without installing it.
+     *
+     * Other templates referenced by this one are resolved through the provided function, which
+     * allows preprocessing against a set of templates that isn't yet visible to the renderer.
+     *
+     * @param templates Resolves a template name to its root element, or null if unknown
+     * @return The new instruction set
+     */
+    public PreprocessedInstructionSet preprocess (Function<String, TemplateRootElement> templates)
+    {
+        TemplatePrepareEvent event = FlightRecorderSupport.ENABLED ? new TemplatePrepareEvent() : null;
+
+        if(event != null)
+        {
+            event.begin();
+        }
+
+        PreprocessedInstructionSet result = new PreprocessedInstructionSet(engine, templates, domReleased ? reparse() : this);
+
+        if(event != null && event.shouldCommit())
+        {
+            event.set(getTemplateName(), result.getInstructionCount(), result.getStaticContentLength());
+            event.commit();
+        }
+
+        return result;
+    }
+
+    /**
+     * Replaces the instruction set used to render this template.
+     *
+     * @param instructionSet
+     */
+    public void setInstructionSet (PreprocessedInstructionSet instructionSet)
+    {
+        this.instructionSet = instructionSet;
+        releaseDomIfPossible();
+    }
+
+    /**
+     * Keeps the declaration this template was parsed from, allowing its DOM to be released once it has been
+     * pre-processed, see {@link TemplatingEngine.Initializer#withDomRelease()}.
+     *
+     * @param source
+     * @param parser The parser the source is to be read with
+     */
+    public void setSource (byte[] source, TemplateParser parser)
+    {
+        this.source = source;
+        this.sourceParser = parser;
+    }
+
+    /**
+     * Whether the elements and text of this template were released after pre-processing, in which case
+     * only its name, slots, meta-data and the names of the elements it uses are still available.
+     *
+     * @return
+     */
+    public boolean isDomReleased ()
+    {
+        return domReleased;
+    }
+
+    private void releaseDomIfPossible ()
+    {
+        if(source == null || domReleased || instructionSet == null)
+        {
+            return;
+        }
+
+        for(String name : attributes().map(ReadableAttribute::getName).toArray(String[]::new))
+        {
+            if(!name.equals("name"))
+            {
+                removeAttribute(name);
+            }
+        }
+
+        getChilds().clear();
+
+        if(catchUnassignedSlot != null)
+        {
+            // Detached, so that it doesn't keep the rest of the DOM around
+            catchUnassignedSlot = new TemplateElement(this, "slot");
+        }
+
+        domReleased = true;
+    }
+
+    /**
+     * Parses the declaration of this template again, for it to be pre-processed after its DOM was released.
+     */
+    private TemplateRootElement reparse ()
+    {
+        try
+        {
+            return sourceParser.parse(new TemplateRootElement(engine), new ByteArrayInputStream(source));
+        } catch(IOException | ParsingException e)
+        {
+            throw new IllegalStateException("Unable to parse template " + getTemplateName() + " again", e);
+        }
     }
 
     public TemplatingEngine getEngine ()
@@ -40,7 +170,43 @@ public class TemplateRootElement extends TemplateElement
 
     public PreprocessedInstructionSet getInstructionSet ()
     {
-        return instructionSet;
+        PreprocessedInstructionSet result = instructionSet;
+
+        if(result == null && preparedOnDemand)
+        {
+            // Same lock the engine pre-processes and loads templates with
+            synchronized(engine)
+            {
+                if(instructionSet == null)
+                {
+                    prepare();
+                }
+
+                result = instructionSet;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Whether this template has an instruction set, without preparing one if it's prepared on demand.
+     *
+     * @return
+     */
+    public boolean isPrepared ()
+    {
+        return instructionSet != null;
+    }
+
+    /**
+     * Makes the instruction set be prepared when first requested, rather than by the engine.
+     *
+     * @param preparedOnDemand
+     */
+    public void setPreparedOnDemand (boolean preparedOnDemand)
+    {
+        this.preparedOnDemand = preparedOnDemand;
     }
 
     public Expression createExpression (String text) throws ParseException
@@ -104,6 +270,36 @@ public class TemplateRootElement extends TemplateElement
         return slots;
     }
 
+    /**
+     * Gets the qualified names of all elements declared within this template, which includes any
+     * other templates it depends on.
+     *
+     * @return
+     */
+    public Set<String> getChildElementTypes ()
+    {
+        return childElementTypes;
+    }
+
+    /**
+     * Checks if any of the given template names is used within this template.
+     *
+     * @param qualifiedNames
+     * @return
+     */
+    public boolean dependsOnAny (Collection<String> qualifiedNames)
+    {
+        for(String name : qualifiedNames)
+        {
+            if(childElementTypes.contains(name))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public TemplateText createText (String textContent) throws ParseException
     {
         if(TemplateExpressionText.checkForReferences(textContent))
@@ -2,9 +2,89 @@ package pt.neticle.ark.templating.structure.expressions;
 
 import pt.neticle.ark.templating.renderer.Scope;
 
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public interface Expression
 {
+    String[] NO_REFERENCED_NAMES = new String[0];
+
     Function<Scope, Object> getResolver();
+
+    /**
+     * Gets the names of the scope variables this expression reads. Besides function calls, these are all its
+     * result depends on, so that scopes not defining any of them can share its result with their parent.
+     *
+     * @return
+     */
+    default String[] getReferencedNames ()
+    {
+        return NO_REFERENCED_NAMES;
+    }
+
+    /**
+     * Tells whether the result of this expression can be shared by every scope that reads the same
+     * variables, which isn't the case for expressions calling functions.
+     *
+     * @return
+     */
+    default boolean isMemoizable ()
+    {
+        return true;
+    }
+
+    /**
+     * Passes every reference within this expression, including itself, to the visitor.
+     *
+     * @param visitor
+     */
+    default void visitReferences (Consumer<ObjectReferenceExpression> visitor)
+    {
+    }
+
+    /**
+     * Combines the names referenced by the given expressions, ignoring null expressions.
+     *
+     * @param expressions
+     * @return
+     */
+    static String[] referencedNames (Expression... expressions)
+    {
+        String[] names = Arrays.stream(expressions)
+            .filter(Objects::nonNull)
+            .flatMap(e -> Arrays.stream(e.getReferencedNames()))
+            .distinct()
+            .toArray(String[]::new);
+
+        return names.length > 0 ? names : NO_REFERENCED_NAMES;
+    }
+
+    /**
+     * Tells whether all the given expressions are memoizable, ignoring null expressions.
+     *
+     * @param expressions
+     * @return
+     */
+    static boolean memoizable (Expression... expressions)
+    {
+        return Arrays.stream(expressions)
+            .filter(Objects::nonNull)
+            .allMatch(Expression::isMemoizable);
+    }
+
+    /**
+     * Evaluates this expression as a condition.
+     *
+     * Expressions that produce booleans or constants override this to skip boxing the result.
+     *
+     * @param scope
+     * @param truthiness The rules deciding whether a value counts as true
+     * @return
+     */
+    default boolean evaluateBoolean (Scope scope, Truthiness truthiness)
+    {
+        return truthiness.isTrue(scope.evaluate(this));
+    }
 }
@@ -1,9 +1,10 @@
 package pt.neticle.ark.templating.structure.expressions;
 
 import pt.neticle.ark.templating.structure.functions.FunctionCatalog;
+import pt.neticle.ark.templating.structure.properties.PropertyAccess;
 
 import java.text.ParseException;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Predicate;
 
@@ -11,16 +12,22 @@ public class ExpressionMatcher
 {
     private final Map<Predicate<String>, ExpressionProvider> handlers;
     private final FunctionCatalog functionCatalog;
+    private Truthiness truthiness;
 
     public ExpressionMatcher (FunctionCatalog functionCatalog)
     {
         this.functionCatalog = functionCatalog;
+        this.truthiness = Truthiness.CLASSIC;
 
-        handlers = new HashMap<>();
+        // Handlers are tried in order: operators must be found before a function call or string literal
+        // gets to match the whole text, and literals such as true or 10 would otherwise match as references.
+        handlers = new LinkedHashMap<>();
 
         handlers.put(OutputExpression::matches, OutputExpression::new);
-        handlers.put(ObjectReferenceExpression::matches, ObjectReferenceExpression::new);
+        handlers.put(OperatorExpression::matches, OperatorExpression::parse);
         handlers.put(StringLiteralExpression::matches, StringLiteralExpression::new);
+        handlers.put(LiteralExpression::matches, LiteralExpression::new);
+        handlers.put(ObjectReferenceExpression::matches, ObjectReferenceExpression::new);
         handlers.put(FunctionCallExpression::matches, FunctionCallExpression::new);
     }
 
@@ -29,6 +36,26 @@ public class ExpressionMatcher
         return functionCatalog;
     }
 
+    public PropertyAccess getPropertyAccess ()
+    {
+        return functionCatalog.getPropertyAccess();
+    }
+
+    public Truthiness getTruthiness ()
+    {
+        return truthiness;
+    }
+
+    /**
+     * Sets the rules for evaluating conditions, which only apply to expressions matched afterwards.
+     *
+     * @param truthiness
+     */
+    public void setTruthiness (Truthiness truthiness)
+    {
+        this.truthiness = truthiness;
+    }
+
     /**
      * Matches a given text string for a suitable expression.
      *
@@ -3,10 +3,15 @@ package pt.neticle.ark.templating.structure.expressions;
 import pt.neticle.ark.templating.exception.RenderingException;
 import pt.neticle.ark.templating.renderer.Scope;
 import pt.neticle.ark.templating.structure.functions.FunctionHandler;
+import pt.neticle.ark.templating.structure.functions.FunctionHandler0;
+import pt.neticle.ark.templating.structure.functions.FunctionHandler1;
+import pt.neticle.ark.templating.structure.functions.FunctionHandler2;
+import pt.neticle.ark.templating.structure.functions.FunctionHandler3;
 
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -20,8 +25,10 @@ public class FunctionCallExpression implements Expression
 
     private final String functionName;
     private final Expression[] argumentExpressions;
+    private final String[] referencedNames;
     private final ExpressionMatcher origin;
-    private final FunctionHandler handler;
+    private final FunctionHandler<?> handler;
+    private final boolean directCall;
     private final int hashCode;
 
     FunctionCallExpression (ExpressionMatcher matcher, String text) throws ParseException
@@ -82,8 +89,15 @@ public class FunctionCallExpression implements Expression
         }
 
         argumentExpressions = argList.stream().toArray(Expression[]::new);
+        referencedNames = Expression.referencedNames(argumentExpressions);
         handler = origin.getFunctionCatalog().getHandler(functionName);
 
+        if(handler == null && origin.getFunctionCatalog().isFrozen())
+        {
+            throw new ParseException("Unknown function: " + functionName, 0);
+        }
+        directCall = handler != null && acceptsDirectCall(handler, argumentExpressions.length);
+
         {
             int result = functionName.hashCode();
             result = 31 * result + Arrays.hashCode(argumentExpressions);
@@ -96,26 +110,59 @@ public class FunctionCallExpression implements Expression
 
     public Object resolve (Scope scope)
     {
-        final FunctionHandler _handler = handler != null ?
-            handler : origin.getFunctionCatalog().getHandler(functionName);
+        if(directCall)
+        {
+            switch(argumentExpressions.length)
+            {
+                case 0:
+                    return ((FunctionHandler0<?>) handler).apply();
 
-        final Object result;
+                case 1:
+                    return ((FunctionHandler1<?>) handler).apply(scope.evaluate(argumentExpressions[0]));
 
-        if(_handler != null)
-        {
-            result = _handler.apply
-            (
-                Arrays.stream(argumentExpressions)
-                    .map((x) -> scope.evaluate(x))
-                    .toArray(Object[]::new)
-            );
+                case 2:
+                    return ((FunctionHandler2<?>) handler).apply(scope.evaluate(argumentExpressions[0]),
+                        scope.evaluate(argumentExpressions[1]));
+
+                default:
+                    return ((FunctionHandler3<?>) handler).apply(scope.evaluate(argumentExpressions[0]),
+                        scope.evaluate(argumentExpressions[1]), scope.evaluate(argumentExpressions[2]));
+            }
         }
-        else
+
+        // Only catalogs that aren't frozen yet may provide the handler after the expression was parsed
+        final FunctionHandler<?> _handler = handler != null ?
+            handler : origin.getFunctionCatalog().getHandler(functionName);
+
+        if(_handler == null)
         {
             throw new RenderingException("Unknown function: " + functionName);
         }
 
-        return result;
+        final Object[] args = new Object[argumentExpressions.length];
+
+        for(int i = 0; i < args.length; i++)
+        {
+            args[i] = scope.evaluate(argumentExpressions[i]);
+        }
+
+        return _handler.apply(args);
+    }
+
+    /**
+     * Checks whether the handler has a fixed-arity variant for the given number of arguments, in which
+     * case calls can skip building an array of arguments.
+     */
+    private static boolean acceptsDirectCall (FunctionHandler<?> handler, int arity)
+    {
+        switch(arity)
+        {
+            case 0: return handler instanceof FunctionHandler0;
+            case 1: return handler instanceof FunctionHandler1;
+            case 2: return handler instanceof FunctionHandler2;
+            case 3: return handler instanceof FunctionHandler3;
+            default: return false;
+        }
     }
 
     @Override
@@ -124,6 +171,27 @@ public class FunctionCallExpression implements Expression
         return this::resolve;
     }
 
+    @Override
+    public String[] getReferencedNames ()
+    {
+        return referencedNames;
+    }
+
+    @Override
+    public boolean isMemoizable ()
+    {
+        return false;
+    }
+
+    @Override
+    public void visitReferences (Consumer<ObjectReferenceExpression> visitor)
+    {
+        for(Expression argument : argumentExpressions)
+        {
+            argument.visitReferences(visitor);
+        }
+    }
+
     public String getFunctionName ()
     {
         return functionName;
@@ -0,0 +1,122 @@
+package pt.neticle.ark.templating.structure.expressions;
+
+import pt.neticle.ark.templating.renderer.Scope;
+
+import java.text.ParseException;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a number, boolean or null literal, such as 10, -2.5, true, false or null
+ *
+ * Integer literals resolve to a Long, decimal literals to a Double.
+ *
+ * With {@link Truthiness#CLASSIC}, a scope variable named true, false or null takes precedence over the
+ * literal, as such names used to be plain references. Numbers aren't valid variable names, and are always
+ * taken as literals.
+ */
+public class LiteralExpression implements Expression
+{
+    private static final Pattern numberPt = Pattern.compile("^-?\\d+(\\.\\d+)?$");
+
+    private final String text;
+    private final Object value;
+    private final Truthiness truthiness;
+    private final boolean truthy;
+
+    /**
+     * Whether a scope variable named as this literal overrides it, decided once as it's parsed.
+     */
+    private final boolean shadowable;
+    private final String[] referencedNames;
+
+    LiteralExpression (ExpressionMatcher matcher, String text) throws ParseException
+    {
+        this.text = text;
+
+        switch(text)
+        {
+            case "true":
+                value = Boolean.TRUE;
+                break;
+
+            case "false":
+                value = Boolean.FALSE;
+                break;
+
+            case "null":
+                value = null;
+                break;
+
+            default:
+                try
+                {
+                    value = text.indexOf('.') >= 0 ? (Object) Double.valueOf(text) : (Object) Long.valueOf(text);
+                } catch(NumberFormatException e)
+                {
+                    throw new ParseException("Number literal out of range: " + text, 0);
+                }
+        }
+
+        truthiness = matcher.getTruthiness();
+        truthy = truthiness.isTrue(value);
+        shadowable = truthiness == Truthiness.CLASSIC && !(value instanceof Number);
+        referencedNames = shadowable ? new String[] { text } : NO_REFERENCED_NAMES;
+    }
+
+    public Object resolve (Scope scope)
+    {
+        return shadowable && scope.available(text) ? scope.get(text) : value;
+    }
+
+    @Override
+    public Function<Scope, Object> getResolver ()
+    {
+        return this::resolve;
+    }
+
+    @Override
+    public String[] getReferencedNames ()
+    {
+        return referencedNames;
+    }
+
+    @Override
+    public boolean evaluateBoolean (Scope scope, Truthiness truthiness)
+    {
+        if(shadowable && scope.available(text))
+        {
+            return truthiness.isTrue(scope.get(text));
+        }
+
+        return truthiness == this.truthiness ? truthy : truthiness.isTrue(value);
+    }
+
+    public Object getValue ()
+    {
+        return value;
+    }
+
+    static boolean matches (String text)
+    {
+        return text.equals("true") || text.equals("false") || text.equals("null") || numberPt.matcher(text).find();
+    }
+
+    @Override
+    public boolean equals (Object o)
+    {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+
+        LiteralExpression that = (LiteralExpression) o;
+
+        return shadowable == that.shadowable && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+        return Objects.hashCode(value);
+    }
+}
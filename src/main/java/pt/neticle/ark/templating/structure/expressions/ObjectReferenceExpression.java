@@ -1,13 +1,10 @@
 package pt.neticle.ark.templating.structure.expressions;
 
 import pt.neticle.ark.templating.renderer.Scope;
+import pt.neticle.ark.templating.structure.properties.PropertyAccess;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
@@ -21,23 +18,27 @@ import java.util.regex.Pattern;
  * "foo.bar" references the "bar" member of the "foo" object present in the current scope.
  * If "foo" is a Map, the reference will be resolved by calling foo.get("bar").
  * Otherwise, it's assumed "foo" is an Object and the reference will be resolved by attempting
- * to call foo.getBar().
+ * to call foo.getBar(). See {@link PropertyAccess} for all the ways a member can be resolved.
  */
 public class ObjectReferenceExpression implements Expression
 {
     private static final Pattern matcherPt = Pattern.compile("(^\\w([\\w.]*)?\\w$)|(^(\\w+)$)");
     private final String[] segments;
+    private final String[] referencedNames;
+    private final PropertyAccess propertyAccess;
     private final int hashCode;
 
-    private static Map<String, Method> mappedMethods = new ConcurrentHashMap<>();
-
     ObjectReferenceExpression (ExpressionMatcher matcher, String text)
     {
+        propertyAccess = matcher.getPropertyAccess();
+
         segments = Arrays.stream(text.split("\\."))
             .filter((s) -> s.length() > 0)
+            .map(String::intern)
             .toArray(String[]::new);
 
         hashCode = Arrays.hashCode(segments);
+        referencedNames = segments.length > 0 ? new String[] { segments[0] } : NO_REFERENCED_NAMES;
     }
 
     public Object resolve (Scope scope)
@@ -51,66 +52,7 @@ public class ObjectReferenceExpression implements Expression
 
         for(int i = 1; i < segments.length && current != null; i++)
         {
-            if(current instanceof Map)
-            {
-                current = ((Map) current).get(segments[i]);
-            }
-
-            else if(current instanceof Map.Entry)
-            {
-                // https://bugs.java.com/bugdatabase/view_bug.do?bug_id=4207233
-                if(segments[i].equals("key"))
-                {
-                    current =  ((Map.Entry)current).getKey();
-                }
-                else if(segments[i].equals("value"))
-                {
-                    current = ((Map.Entry) current).getValue();
-                }
-                else
-                {
-                    current = null;
-                }
-            }
-
-            else if(current instanceof Supplier)
-            {
-                current = ((Supplier) current).get();
-            }
-
-            else
-            {
-                final Object finalCurrent = current;
-                final int finalI = i;
-                Method getter = mappedMethods.computeIfAbsent(current.getClass().getName()+segments[i], (k) ->
-                {
-                    try
-                    {
-                        return finalCurrent.getClass().getMethod("get" + segments[finalI].substring(0, 1).toUpperCase() + segments[finalI].substring(1));
-                    } catch(NoSuchMethodException e)
-                    {
-                        return null;
-                    }
-                });
-
-                if(getter != null)
-                {
-                    try
-                    {
-                        current = getter.invoke(current);
-                    } catch(IllegalAccessException e)
-                    {
-                        current = null;
-                    } catch(InvocationTargetException e)
-                    {
-                        throw new RuntimeException(e);
-                    }
-                }
-                else
-                {
-                    current = null;
-                }
-            }
+            current = propertyAccess.get(current, segments[i]);
         }
 
         if(current instanceof Supplier)
@@ -127,6 +69,18 @@ public class ObjectReferenceExpression implements Expression
         return this::resolve;
     }
 
+    @Override
+    public String[] getReferencedNames ()
+    {
+        return referencedNames;
+    }
+
+    @Override
+    public void visitReferences (Consumer<ObjectReferenceExpression> visitor)
+    {
+        visitor.accept(this);
+    }
+
     public String[] getSegments ()
     {
         return segments;
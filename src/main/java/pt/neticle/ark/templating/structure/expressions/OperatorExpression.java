@@ -0,0 +1,438 @@
+package pt.neticle.ark.templating.structure.expressions;
+
+import pt.neticle.ark.templating.exception.RenderingException;
+import pt.neticle.ark.templating.renderer.Scope;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Matches an expression combining other expressions with an operator, such as [a] == [b], [a] && [b]
+ * or ![a]. Parentheses can be used for grouping, e.g. ([a] || [b]) && [c]
+ *
+ * Supported operators, from lowest to highest precedence:
+ * - || and &&, with short-circuiting
+ * - == and !=
+ * - <, >, <= and >=
+ * - ! (negation)
+ *
+ * Operands of the boolean operators are evaluated as conditions, following the {@link Truthiness} of the
+ * matcher the expression was parsed with.
+ * Numbers are compared by value regardless of their type, so that a reference to an Integer equals the
+ * literal 1. Any other values are compared with equals() and, for the ordering operators, compareTo().
+ *
+ * Operators only apply outside of output expressions, where || keeps its meaning of default value.
+ */
+public class OperatorExpression implements Expression
+{
+    public enum Operator
+    {
+        OR("||", 0),
+        AND("&&", 1),
+        EQUALS("==", 2),
+        NOT_EQUALS("!=", 2),
+        LESS_OR_EQUAL("<=", 3),
+        GREATER_OR_EQUAL(">=", 3),
+        LESS_THAN("<", 3),
+        GREATER_THAN(">", 3),
+        NOT("!", 4);
+
+        private final String symbol;
+        private final int precedence;
+
+        Operator (String symbol, int precedence)
+        {
+            this.symbol = symbol;
+            this.precedence = precedence;
+        }
+
+        public String getSymbol ()
+        {
+            return symbol;
+        }
+    }
+
+    private static final Operator[] binaryOperators = new Operator[]
+    {
+        Operator.OR, Operator.AND, Operator.EQUALS, Operator.NOT_EQUALS,
+        Operator.LESS_OR_EQUAL, Operator.GREATER_OR_EQUAL, Operator.LESS_THAN, Operator.GREATER_THAN
+    };
+
+    private final Operator operator;
+    private final Expression left;
+    private final Expression right;
+    private final Truthiness truthiness;
+    private final String[] referencedNames;
+    private final boolean memoizable;
+    private final int hashCode;
+
+    private OperatorExpression (ExpressionMatcher matcher, Operator operator, Expression left, Expression right)
+    {
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+        this.truthiness = matcher.getTruthiness();
+        this.referencedNames = Expression.referencedNames(left, right);
+        this.memoizable = Expression.memoizable(left, right);
+
+        {
+            int result = operator.hashCode();
+            result = 31 * result + (left != null ? left.hashCode() : 0);
+            result = 31 * result + (right != null ? right.hashCode() : 0);
+
+            hashCode = result;
+        }
+    }
+
+    /**
+     * Splits the given text around its operator with the lowest precedence, matching each side with the
+     * given matcher.
+     *
+     * @return An operator expression, or the inner expression when the text is just a group in parentheses
+     * @throws ParseException
+     */
+    static Expression parse (ExpressionMatcher matcher, String text) throws ParseException
+    {
+        text = text.trim();
+
+        int[] split = findSplit(text);
+
+        if(split != null)
+        {
+            Operator op = binaryOperators[split[1]];
+            String lhs = text.substring(0, split[0]).trim();
+            String rhs = text.substring(split[0] + op.symbol.length()).trim();
+
+            if(lhs.isEmpty() || rhs.isEmpty())
+            {
+                throw new ParseException("Missing operand for operator " + op.symbol, split[0]);
+            }
+
+            return new OperatorExpression(matcher, op, matcher.match(lhs), matcher.match(rhs));
+        }
+
+        if(isNegation(text))
+        {
+            return new OperatorExpression(matcher, Operator.NOT, matcher.match(text.substring(1).trim()), null);
+        }
+
+        if(isGroup(text))
+        {
+            return matcher.match(text.substring(1, text.length() - 1).trim());
+        }
+
+        throw new ParseException("No operator found in '" + text + "'", 0);
+    }
+
+    static boolean matches (String text)
+    {
+        text = text.trim();
+
+        return findSplit(text) != null || isNegation(text) || isGroup(text);
+    }
+
+    /**
+     * Finds the last binary operator outside of quotes and parentheses with the lowest precedence, so that
+     * operators of the same precedence associate to the left.
+     *
+     * @return The position of the operator and its index in binaryOperators, or null if there's none
+     */
+    private static int[] findSplit (String text)
+    {
+        int[] found = null;
+        int depth = 0;
+        boolean inQuotes = false;
+
+        for(int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+
+            if(inQuotes)
+            {
+                if(c == '\\')
+                {
+                    i++;
+                }
+                else if(c == '\'')
+                {
+                    inQuotes = false;
+                }
+
+                continue;
+            }
+
+            switch(c)
+            {
+                case '\'':
+                    inQuotes = true;
+                    continue;
+
+                case '(':
+                    depth++;
+                    continue;
+
+                case ')':
+                    depth--;
+                    continue;
+            }
+
+            if(depth != 0)
+            {
+                continue;
+            }
+
+            for(int op = 0; op < binaryOperators.length; op++)
+            {
+                if(text.startsWith(binaryOperators[op].symbol, i))
+                {
+                    if(found == null || binaryOperators[op].precedence <= binaryOperators[found[1]].precedence)
+                    {
+                        found = new int[] { i, op };
+                    }
+
+                    i += binaryOperators[op].symbol.length() - 1;
+                    break;
+                }
+            }
+        }
+
+        return found;
+    }
+
+    private static boolean isNegation (String text)
+    {
+        return text.length() > 1 && text.charAt(0) == '!' && text.charAt(1) != '=';
+    }
+
+    private static boolean isGroup (String text)
+    {
+        if(text.length() < 2 || text.charAt(0) != '(' || text.charAt(text.length() - 1) != ')')
+        {
+            return false;
+        }
+
+        int depth = 0;
+        boolean inQuotes = false;
+
+        for(int i = 0; i < text.length() - 1; i++)
+        {
+            char c = text.charAt(i);
+
+            if(inQuotes)
+            {
+                if(c == '\\')
+                {
+                    i++;
+                }
+                else if(c == '\'')
+                {
+                    inQuotes = false;
+                }
+            }
+            else if(c == '\'')
+            {
+                inQuotes = true;
+            }
+            else if(c == '(')
+            {
+                depth++;
+            }
+            else if(c == ')' && --depth == 0)
+            {
+                // the opening parenthesis closes before the end, e.g. (a) && (b)
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public Object resolve (Scope scope)
+    {
+        return evaluateBoolean(scope, truthiness);
+    }
+
+    @Override
+    public String[] getReferencedNames ()
+    {
+        return referencedNames;
+    }
+
+    @Override
+    public boolean isMemoizable ()
+    {
+        return memoizable;
+    }
+
+    @Override
+    public void visitReferences (Consumer<ObjectReferenceExpression> visitor)
+    {
+        left.visitReferences(visitor);
+
+        if(right != null)
+        {
+            right.visitReferences(visitor);
+        }
+    }
+
+    @Override
+    public boolean evaluateBoolean (Scope scope, Truthiness truthiness)
+    {
+        switch(operator)
+        {
+            case OR:
+                return left.evaluateBoolean(scope, truthiness) || right.evaluateBoolean(scope, truthiness);
+
+            case AND:
+                return left.evaluateBoolean(scope, truthiness) && right.evaluateBoolean(scope, truthiness);
+
+            case NOT:
+                return !left.evaluateBoolean(scope, truthiness);
+
+            case EQUALS:
+                return equal(scope.evaluate(left), scope.evaluate(right));
+
+            case NOT_EQUALS:
+                return !equal(scope.evaluate(left), scope.evaluate(right));
+
+            default:
+                return compare(scope.evaluate(left), scope.evaluate(right));
+        }
+    }
+
+    private boolean compare (Object a, Object b)
+    {
+        if(a == null || b == null)
+        {
+            return false;
+        }
+
+        final int result;
+
+        if(a instanceof Number && b instanceof Number)
+        {
+            result = compareNumbers((Number) a, (Number) b);
+        }
+        else if(a instanceof Comparable && a.getClass().isInstance(b))
+        {
+            // b is an instance of a's class, which is what a Comparable is normally declared to accept
+            @SuppressWarnings("unchecked")
+            Comparable<Object> comparable = (Comparable<Object>) a;
+            result = comparable.compareTo(b);
+        }
+        else
+        {
+            throw new RenderingException("Unable to compare " + a.getClass().getName() + " with " + b.getClass().getName());
+        }
+
+        switch(operator)
+        {
+            case LESS_THAN: return result < 0;
+            case GREATER_THAN: return result > 0;
+            case LESS_OR_EQUAL: return result <= 0;
+            default: return result >= 0;
+        }
+    }
+
+    static boolean equal (Object a, Object b)
+    {
+        if(a == b)
+        {
+            return true;
+        }
+
+        if(a == null || b == null)
+        {
+            return false;
+        }
+
+        if(a instanceof Number && b instanceof Number)
+        {
+            return compareNumbers((Number) a, (Number) b) == 0;
+        }
+
+        return a.equals(b);
+    }
+
+    static int compareNumbers (Number a, Number b)
+    {
+        if(isIntegral(a) && isIntegral(b))
+        {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+
+        if(a instanceof BigDecimal || b instanceof BigDecimal || a instanceof BigInteger || b instanceof BigInteger)
+        {
+            return toBigDecimal(a).compareTo(toBigDecimal(b));
+        }
+
+        return Double.compare(a.doubleValue(), b.doubleValue());
+    }
+
+    private static boolean isIntegral (Number n)
+    {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal (Number n)
+    {
+        if(n instanceof BigDecimal)
+        {
+            return (BigDecimal) n;
+        }
+
+        if(n instanceof BigInteger)
+        {
+            return new BigDecimal((BigInteger) n);
+        }
+
+        return isIntegral(n) ? BigDecimal.valueOf(n.longValue()) : BigDecimal.valueOf(n.doubleValue());
+    }
+
+    @Override
+    public Function<Scope, Object> getResolver ()
+    {
+        return this::resolve;
+    }
+
+    public Operator getOperator ()
+    {
+        return operator;
+    }
+
+    public Expression getLeft ()
+    {
+        return left;
+    }
+
+    /**
+     * @return The right-hand side operand, or null for the negation operator
+     */
+    public Expression getRight ()
+    {
+        return right;
+    }
+
+    @Override
+    public boolean equals (Object o)
+    {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+
+        OperatorExpression that = (OperatorExpression) o;
+
+        if(hashCode != that.hashCode) return false;
+        if(operator != that.operator) return false;
+        if(!left.equals(that.left)) return false;
+        return right != null ? right.equals(that.right) : that.right == null;
+    }
+
+    @Override
+    public int hashCode ()
+    {
+        return hashCode;
+    }
+}
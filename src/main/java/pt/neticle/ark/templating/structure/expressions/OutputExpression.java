@@ -3,6 +3,9 @@ package pt.neticle.ark.templating.structure.expressions;
 import pt.neticle.ark.templating.renderer.Scope;
 
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -29,6 +32,8 @@ public class OutputExpression implements Expression
     private final Operator operator;
     private final Expression getterExpression;
     private final Expression defaultExpression;
+    private final String[] referencedNames;
+    private final boolean memoizable;
     private final int hashCode;
 
     OutputExpression (ExpressionMatcher matcher, String text) throws ParseException
@@ -51,7 +56,7 @@ public class OutputExpression implements Expression
         }
 
         String expBody = text.substring(m.end(1)).trim();
-        String[] subExpressions = expBody.split("\\|{2}");
+        String[] subExpressions = splitDefault(expBody);
 
         if(subExpressions.length > 2)
         {
@@ -61,6 +66,8 @@ public class OutputExpression implements Expression
         getterExpression = matcher.match(subExpressions[0].trim());
         defaultExpression = subExpressions.length > 1 ?
             matcher.match(subExpressions[1].trim()) : null;
+        referencedNames = Expression.referencedNames(getterExpression, defaultExpression);
+        memoizable = Expression.memoizable(getterExpression, defaultExpression);
 
         {
             int result = operator.hashCode();
@@ -93,6 +100,83 @@ public class OutputExpression implements Expression
         return this::resolve;
     }
 
+    @Override
+    public String[] getReferencedNames ()
+    {
+        return referencedNames;
+    }
+
+    @Override
+    public boolean isMemoizable ()
+    {
+        return memoizable;
+    }
+
+    @Override
+    public void visitReferences (Consumer<ObjectReferenceExpression> visitor)
+    {
+        if(getterExpression != null)
+        {
+            getterExpression.visitReferences(visitor);
+        }
+
+        if(defaultExpression != null)
+        {
+            defaultExpression.visitReferences(visitor);
+        }
+    }
+
+    /**
+     * Splits the expression body on every || outside of quotes and parentheses, so that the operator
+     * can still be used within a group, e.g. = (a || b) && c
+     */
+    private static String[] splitDefault (String text)
+    {
+        List<String> parts = new ArrayList<>(2);
+        int start = 0;
+        int depth = 0;
+        boolean inQuotes = false;
+
+        for(int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+
+            if(inQuotes)
+            {
+                if(c == '\\')
+                {
+                    i++;
+                }
+                else if(c == '\'')
+                {
+                    inQuotes = false;
+                }
+            }
+            else if(c == '\'')
+            {
+                inQuotes = true;
+            }
+            else if(c == '(')
+            {
+                depth++;
+            }
+            else if(c == ')')
+            {
+                depth--;
+            }
+            else if(depth == 0 && text.startsWith("||", i))
+            {
+                parts.add(text.substring(start, i));
+                start = i + 2;
+                i++;
+            }
+        }
+
+        parts.add(text.substring(start));
+
+        return parts.toArray(new String[0]);
+    }
+
     static boolean matches (String str)
     {
         return operatorPt.matcher(str).find();
@@ -0,0 +1,97 @@
+package pt.neticle.ark.templating.structure.expressions;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The rules deciding whether a value counts as true, wherever a condition is expected: in the "if"
+ * attribute of inner templates, as an operand of the boolean operators and in the If function.
+ *
+ * The rules in use are set on the {@link ExpressionMatcher}, see
+ * {@link pt.neticle.ark.templating.TemplatingEngine.Initializer#withTruthiness(Truthiness)}.
+ */
+public enum Truthiness
+{
+    /**
+     * The rules templates were always rendered with, and the default:
+     *
+     * - null is false
+     * - Booleans are their own value
+     * - Any other value is true only if its text is "true", ignoring case
+     *
+     * The If function only accepts a Boolean condition, and variables named true, false or null are still
+     * read from the scope when defined there, rather than taken as literals.
+     */
+    CLASSIC
+    {
+        @Override
+        public boolean isTrue (Object value)
+        {
+            if(value instanceof Boolean)
+            {
+                return (Boolean) value;
+            }
+
+            return value != null && Boolean.parseBoolean(value.toString());
+        }
+    },
+
+    /**
+     * - null is false
+     * - Booleans are their own value
+     * - Numbers are false when zero
+     * - Strings are false when empty or equal to "false", ignoring case
+     * - Collections, maps and arrays are false when empty
+     * - Any other object is true
+     *
+     * The If function accepts conditions of any type, and true, false, null and numbers are always literals.
+     */
+    EXTENDED
+    {
+        @Override
+        public boolean isTrue (Object value)
+        {
+            if(value == null)
+            {
+                return false;
+            }
+
+            if(value instanceof Boolean)
+            {
+                return (Boolean) value;
+            }
+
+            if(value instanceof Number)
+            {
+                return value instanceof Double || value instanceof Float ?
+                    ((Number) value).doubleValue() != 0 : ((Number) value).longValue() != 0;
+            }
+
+            if(value instanceof CharSequence)
+            {
+                CharSequence cs = (CharSequence) value;
+                return cs.length() > 0 && !(cs.length() == 5 && "false".equalsIgnoreCase(cs.toString()));
+            }
+
+            if(value instanceof Collection)
+            {
+                return !((Collection<?>) value).isEmpty();
+            }
+
+            if(value instanceof Map)
+            {
+                return !((Map<?, ?>) value).isEmpty();
+            }
+
+            if(value.getClass().isArray())
+            {
+                return Array.getLength(value) > 0;
+            }
+
+            return true;
+        }
+    };
+
+    public abstract boolean isTrue (Object value);
+}
@@ -7,7 +7,7 @@ import pt.neticle.ark.templating.exception.RenderingException;
  *
  * Checks if the given Collection, array or String is empty.
  */
-public class EmptyFunction extends DefaultFunctionHandler<Boolean>
+public class EmptyFunction extends DefaultFunctionHandler<Boolean> implements FunctionHandler1<Boolean>
 {
     @Override
     public String getName ()
@@ -16,8 +16,8 @@ public class EmptyFunction extends DefaultFunctionHandler<Boolean>
     }
 
     @Override
-    public Boolean apply (Object[] args) throws RenderingException
+    public Boolean apply (Object arg0) throws RenderingException
     {
-        return !(new NotEmptyFunction().apply(args));
+        return !NotEmptyFunction.notEmpty(arg0);
     }
 }
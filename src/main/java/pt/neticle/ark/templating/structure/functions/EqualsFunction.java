@@ -8,7 +8,7 @@ import pt.neticle.ark.templating.exception.RenderingException;
  * Checks if the given arguments are equal. In case both argument's
  * are Strings, the equals() method will be used.
  */
-public class EqualsFunction extends DefaultFunctionHandler<Boolean>
+public class EqualsFunction extends DefaultFunctionHandler<Boolean> implements FunctionHandler2<Boolean>
 {
     @Override
     public String getName ()
@@ -16,19 +16,25 @@ public class EqualsFunction extends DefaultFunctionHandler<Boolean>
         return "Equals";
     }
 
+    @Override
+    public Boolean apply (Object arg0, Object arg1) throws RenderingException
+    {
+        return equal(arg0, arg1);
+    }
+
     @Override
     public Boolean apply (Object[] args) throws RenderingException
     {
-        if(args.length != 2)
-        {
-            return false;
-        }
+        return args.length == 2 && equal(args[0], args[1]);
+    }
 
-        if(matchSignatureArgs(args, true, String.class, String.class))
+    static boolean equal (Object arg0, Object arg1)
+    {
+        if(arg0 instanceof String && arg1 instanceof String)
         {
-            return args[0].equals(args[1]);
+            return arg0.equals(arg1);
         }
 
-        return args[0] == args[1];
+        return arg0 == arg1;
     }
 }
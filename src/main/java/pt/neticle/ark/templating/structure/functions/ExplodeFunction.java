@@ -7,8 +7,10 @@ import pt.neticle.ark.templating.exception.RenderingException;
  *
  * Splits the given text around matches of the specified delimiter
  */
-public class ExplodeFunction extends DefaultFunctionHandler<String[]>
+public class ExplodeFunction extends DefaultFunctionHandler<String[]> implements FunctionHandler2<String[]>
 {
+    private static final FunctionSignature signature = FunctionSignature.of("Explode", String.class, String.class);
+
     @Override
     public String getName ()
     {
@@ -16,15 +18,13 @@ public class ExplodeFunction extends DefaultFunctionHandler<String[]>
     }
 
     @Override
-    public String[] apply (Object[] args) throws RenderingException
+    public String[] apply (Object delimiter, Object text) throws RenderingException
     {
-        if(args[1] == null)
+        if(text == null)
         {
             return new String[0];
         }
 
-        ensureSignatureArgs(args, false, String.class, String.class);
-
-        return ((String)args[1]).split((String)args[0]);
+        return signature.<String>nonNullArgument(1, text).split(signature.nonNullArgument(0, delimiter));
     }
 }
@@ -1,18 +1,42 @@
 package pt.neticle.ark.templating.structure.functions;
 
+import pt.neticle.ark.templating.structure.properties.PropertyAccess;
+
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
 /**
  * Container object for all known functions that are callable from a FunctionCallExpression
+ *
+ * A catalog can be frozen once all functions are registered, which the engine initializer does when
+ * building the engine. A frozen catalog can no longer be changed, which allows function calls to be
+ * bound to their handlers once, when templates are parsed, and calls to unknown functions to be
+ * reported at that point.
  */
 public class FunctionCatalog
 {
-    private final Map<String, FunctionHandler> handlers;
+    private final PropertyAccess propertyAccess;
+    private Map<String, FunctionHandler<?>> handlers;
+
+    /**
+     * The frozen table, names sorted for binary search and the handler of each name at the same index.
+     */
+    private volatile String[] frozenNames;
+    private FunctionHandler<?>[] frozenHandlers;
 
     public FunctionCatalog ()
     {
+        this(new PropertyAccess());
+    }
+
+    /**
+     * @param propertyAccess The property access used by the built-in functions and by reference expressions
+     */
+    public FunctionCatalog (PropertyAccess propertyAccess)
+    {
+        this.propertyAccess = propertyAccess;
         this.handlers = new HashMap<>();
 
         registerHandler(new ImplodeFunction());
@@ -21,27 +45,84 @@ public class FunctionCatalog
         registerHandler(new EmptyFunction());
         registerHandler(new EqualsFunction());
         registerHandler(new NotEqualsFunction());
-        registerHandler(new GetFunction());
+        registerHandler(new GetFunction(propertyAccess));
         registerHandler(new IfFunction());
     }
 
-    public void registerHandler (String name, FunctionHandler handler)
+    /**
+     * @throws IllegalStateException If the catalog has been frozen
+     */
+    public synchronized void registerHandler (String name, FunctionHandler<?> handler)
     {
+        if(frozenNames != null)
+        {
+            throw new IllegalStateException("Unable to register function " + name + ", the function catalog is frozen");
+        }
+
         handlers.put(name, handler);
     }
 
-    public void registerHandler (DefaultFunctionHandler handler)
+    /**
+     * @throws IllegalStateException If the catalog has been frozen
+     */
+    public void registerHandler (DefaultFunctionHandler<?> handler)
     {
         registerHandler(handler.getName(), handler);
     }
 
-    public FunctionHandler getHandler (String fn)
+    /**
+     * Turns this catalog into an immutable table. Does nothing if the catalog is already frozen.
+     */
+    public synchronized void freeze ()
     {
-        return handlers.get(fn);
+        if(frozenNames != null)
+        {
+            return;
+        }
+
+        String[] names = handlers.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+
+        FunctionHandler<?>[] values = new FunctionHandler<?>[names.length];
+
+        for(int i = 0; i < names.length; i++)
+        {
+            values[i] = handlers.get(names[i]);
+        }
+
+        frozenHandlers = values;
+        frozenNames = names;
+        handlers = null;
+    }
+
+    public PropertyAccess getPropertyAccess ()
+    {
+        return propertyAccess;
+    }
+
+    public boolean isFrozen ()
+    {
+        return frozenNames != null;
+    }
+
+    public FunctionHandler<?> getHandler (String fn)
+    {
+        final String[] names = frozenNames;
+
+        if(names != null)
+        {
+            int index = Arrays.binarySearch(names, fn);
+            return index >= 0 ? frozenHandlers[index] : null;
+        }
+
+        synchronized(this)
+        {
+            return frozenNames != null ? getHandler(fn) : handlers.get(fn);
+        }
     }
 
-    public Optional<FunctionHandler> handler (String fn)
+    public Optional<FunctionHandler<?>> handler (String fn)
     {
-        return Optional.ofNullable(handlers.get(fn));
+        return Optional.ofNullable(getHandler(fn));
     }
 }
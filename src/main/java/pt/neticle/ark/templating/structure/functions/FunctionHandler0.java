@@ -0,0 +1,24 @@
+package pt.neticle.ark.templating.structure.functions;
+
+import pt.neticle.ark.templating.exception.RenderingException;
+
+/**
+ * A function handler taking no arguments.
+ *
+ * Calls with a matching number of arguments are bound to {@link #apply()} when the expression
+ * is parsed, so that rendering doesn't need to collect the arguments into an array. Any arguments provided to
+ * calls with a different number of arguments are ignored.
+ *
+ * @param <T>
+ */
+@FunctionalInterface
+public interface FunctionHandler0<T> extends FunctionHandler<T>
+{
+    T apply () throws RenderingException;
+
+    @Override
+    default T apply (Object[] args) throws RenderingException
+    {
+        return apply();
+    }
+}
@@ -0,0 +1,25 @@
+package pt.neticle.ark.templating.structure.functions;
+
+import pt.neticle.ark.templating.exception.RenderingException;
+
+/**
+ * A function handler taking three arguments.
+ *
+ * Calls with a matching number of arguments are bound to {@link #apply(Object, Object, Object)} when the expression
+ * is parsed, so that rendering doesn't need to collect the arguments into an array. Calls with a different number of
+ * arguments are still handled, missing arguments are passed as null and extra ones are ignored.
+ *
+ * @param <T>
+ */
+@FunctionalInterface
+public interface FunctionHandler3<T> extends FunctionHandler<T>
+{
+    T apply (Object arg0, Object arg1, Object arg2) throws RenderingException;
+
+    @Override
+    default T apply (Object[] args) throws RenderingException
+    {
+        return apply(args.length > 0 ? args[0] : null, args.length > 1 ? args[1] : null,
+            args.length > 2 ? args[2] : null);
+    }
+}
@@ -0,0 +1,100 @@
+package pt.neticle.ark.templating.structure.functions;
+
+import pt.neticle.ark.templating.exception.RenderingException;
+
+/**
+ * The argument types of a function, declared once by the function handler instead of being passed
+ * around on every call.
+ *
+ * Checking an argument against a signature only performs an instance check on that argument, the
+ * error messages are the same as the ones used by {@link DefaultFunctionHandler}.
+ */
+public final class FunctionSignature
+{
+    private final String functionName;
+    private final Class<?>[] types;
+
+    private FunctionSignature (String functionName, Class<?>[] types)
+    {
+        this.functionName = functionName;
+        this.types = types;
+    }
+
+    /**
+     * @param functionName The name of the function, used in error messages
+     * @param types The type of each argument, in order
+     * @return
+     */
+    public static FunctionSignature of (String functionName, Class<?>... types)
+    {
+        return new FunctionSignature(functionName, types.clone());
+    }
+
+    public String getFunctionName ()
+    {
+        return functionName;
+    }
+
+    public int getArity ()
+    {
+        return types.length;
+    }
+
+    public Class<?> getType (int index)
+    {
+        return types[index];
+    }
+
+    /**
+     * Asserts that the given value is either null or of the type declared for the argument at the specified index.
+     *
+     * @param index The index of the argument
+     * @param value The value provided for the argument
+     * @param <A>
+     *
+     * @throws RenderingException Throws an exception if the argument is not of the declared type.
+     *
+     * @return The value, as the declared type
+     */
+    @SuppressWarnings("unchecked") // The caller picks A to match the type it declared for this argument
+    public <A> A argument (int index, Object value)
+    {
+        if(value != null && !types[index].isInstance(value))
+        {
+            throw new RenderingException("Argument " + index + " of " + functionName + " function must be of type " + types[index].getName() + ". " + value.getClass().getName() + " given.");
+        }
+
+        return (A) value;
+    }
+
+    /**
+     * Asserts that the given value is not null and of the type declared for the argument at the specified index.
+     *
+     * @param index The index of the argument
+     * @param value The value provided for the argument
+     * @param <A>
+     *
+     * @throws RenderingException Throws an exception if the argument is null or not of the declared type.
+     *
+     * @return The value, as the declared type
+     */
+    public <A> A nonNullArgument (int index, Object value)
+    {
+        if(value == null)
+        {
+            throw new RenderingException("Argument " + index + " of " + functionName + " function must not be null");
+        }
+
+        return argument(index, value);
+    }
+
+    /**
+     * @param index The index of the argument
+     * @param value The value provided for the argument
+     * @return Whether the value is of the type declared for the argument at the specified index. Null values don't match.
+     */
+    public boolean matches (int index, Object value)
+    {
+        return types[index].isInstance(value);
+    }
+}
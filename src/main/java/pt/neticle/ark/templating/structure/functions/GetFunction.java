@@ -1,13 +1,29 @@
 package pt.neticle.ark.templating.structure.functions;
 
 import pt.neticle.ark.templating.exception.RenderingException;
+import pt.neticle.ark.templating.structure.properties.PropertyAccess;
+
+/**
+ * Object Get(Object target, String property)
+ *
+ * Reads the given property from the target object, the same way as a reference expression would.
+ */
+public class GetFunction extends DefaultFunctionHandler<Object> implements FunctionHandler2<Object>
+{
+    private static final FunctionSignature signature = FunctionSignature.of("Get", Object.class, String.class);
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Map;
+    private final PropertyAccess propertyAccess;
+
+    public GetFunction ()
+    {
+        this(new PropertyAccess());
+    }
+
+    public GetFunction (PropertyAccess propertyAccess)
+    {
+        this.propertyAccess = propertyAccess;
+    }
 
-public class GetFunction extends DefaultFunctionHandler<Object>
-{
     @Override
     public String getName ()
     {
@@ -15,60 +31,13 @@ public class GetFunction extends DefaultFunctionHandler<Object>
     }
 
     @Override
-    public Object apply (Object[] args) throws RenderingException
+    public Object apply (Object target, Object property) throws RenderingException
     {
-        if(args[0] == null || args[1] == null)
+        if(target == null || property == null)
         {
             return null;
         }
 
-        ensureSignatureArgs(args, Object.class, String.class);
-
-        if(args[0] instanceof Map)
-        {
-            return ((Map) args[0]).get(args[1]);
-        }
-
-        else if(args[0] instanceof Map.Entry)
-        {
-            // https://bugs.java.com/bugdatabase/view_bug.do?bug_id=4207233
-            if(args[1].equals("key"))
-            {
-                return ((Map.Entry) args[0]).getKey();
-            } else if(args[1].equals("value"))
-            {
-                return ((Map.Entry) args[0]).getValue();
-            } else
-            {
-                return null;
-            }
-        }
-
-        else
-        {
-            Method getter;
-
-            try
-            {
-                getter = args[0].getClass().getMethod("get" + ((String)args[1]).substring(0, 1).toUpperCase() + ((String) args[1]).substring(1));
-            }
-            catch(NoSuchMethodException e)
-            {
-                return null;
-            }
-
-            try
-            {
-                return getter.invoke(args[0]);
-            }
-            catch(IllegalAccessException e)
-            {
-                return null;
-            }
-            catch(InvocationTargetException e)
-            {
-                throw new RuntimeException(e);
-            }
-        }
+        return propertyAccess.get(target, signature.<String>argument(1, property));
     }
 }
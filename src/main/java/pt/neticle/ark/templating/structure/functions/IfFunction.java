@@ -1,9 +1,28 @@
 package pt.neticle.ark.templating.structure.functions;
 
 import pt.neticle.ark.templating.exception.RenderingException;
+import pt.neticle.ark.templating.structure.expressions.Truthiness;
 
-public class IfFunction extends DefaultFunctionHandler<Object>
+/**
+ * Object If(Boolean condition, Object whenTrue, Object whenFalse)
+ *
+ * Resolves to whenTrue if the condition is true or to whenFalse otherwise. With {@link Truthiness#CLASSIC},
+ * the condition must be a Boolean, with {@link Truthiness#EXTENDED} it may be of any type.
+ */
+public class IfFunction extends DefaultFunctionHandler<Object> implements FunctionHandler3<Object>
 {
+    private final Truthiness truthiness;
+
+    public IfFunction ()
+    {
+        this(Truthiness.CLASSIC);
+    }
+
+    public IfFunction (Truthiness truthiness)
+    {
+        this.truthiness = truthiness;
+    }
+
     @Override
     public String getName ()
     {
@@ -11,10 +30,13 @@ public class IfFunction extends DefaultFunctionHandler<Object>
     }
 
     @Override
-    public Object apply (Object[] args) throws RenderingException
+    public Object apply (Object condition, Object whenTrue, Object whenFalse) throws RenderingException
     {
-        return nonNullArgument(args, 0, Boolean.class) ?
-            (args.length > 1 ? args[1] : null) :
-            (args.length > 2 ? args[2] : null);
+        if(truthiness == Truthiness.CLASSIC)
+        {
+            return nonNullArgument(new Object[] { condition }, 0, Boolean.class) ? whenTrue : whenFalse;
+        }
+
+        return truthiness.isTrue(condition) ? whenTrue : whenFalse;
     }
 }
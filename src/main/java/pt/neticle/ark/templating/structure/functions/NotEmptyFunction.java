@@ -2,6 +2,7 @@ package pt.neticle.ark.templating.structure.functions;
 
 import pt.neticle.ark.templating.exception.RenderingException;
 
+import java.lang.reflect.Array;
 import java.util.Collection;
 
 /**
@@ -9,7 +10,7 @@ import java.util.Collection;
  *
  * Checks if the given Collection, array or String is not empty.
  */
-public class NotEmptyFunction extends DefaultFunctionHandler<Boolean>
+public class NotEmptyFunction extends DefaultFunctionHandler<Boolean> implements FunctionHandler1<Boolean>
 {
 
     @Override
@@ -19,26 +20,31 @@ public class NotEmptyFunction extends DefaultFunctionHandler<Boolean>
     }
 
     @Override
-    public Boolean apply (Object[] args) throws RenderingException
+    public Boolean apply (Object arg0) throws RenderingException
     {
-        if(args[0] == null)
+        return notEmpty(arg0);
+    }
+
+    static boolean notEmpty (Object arg0)
+    {
+        if(arg0 == null)
         {
             return false;
         }
 
-        if(args[0] instanceof Collection)
+        if(arg0 instanceof Collection)
         {
-            return ((Collection)args[0]).size() > 0;
+            return ((Collection)arg0).size() > 0;
         }
 
-        if(args[0].getClass().isArray())
+        if(arg0.getClass().isArray())
         {
-            return ((Object[])args[0]).length > 0;
+            return Array.getLength(arg0) > 0;
         }
 
-        if(args[0] instanceof String)
+        if(arg0 instanceof String)
         {
-            return !((String)args[0]).isEmpty();
+            return !((String)arg0).isEmpty();
         }
 
         return false;
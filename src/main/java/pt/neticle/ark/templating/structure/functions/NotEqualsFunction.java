@@ -8,7 +8,7 @@ import pt.neticle.ark.templating.exception.RenderingException;
  * Checks if the given arguments are not equal. In case both argument's
  * are Strings, the equals() method will be used.
  */
-public class NotEqualsFunction extends DefaultFunctionHandler<Boolean>
+public class NotEqualsFunction extends DefaultFunctionHandler<Boolean> implements FunctionHandler2<Boolean>
 {
     @Override
     public String getName ()
@@ -16,9 +16,15 @@ public class NotEqualsFunction extends DefaultFunctionHandler<Boolean>
         return "NotEquals";
     }
 
+    @Override
+    public Boolean apply (Object arg0, Object arg1) throws RenderingException
+    {
+        return !EqualsFunction.equal(arg0, arg1);
+    }
+
     @Override
     public Boolean apply (Object[] args) throws RenderingException
     {
-        return !(new EqualsFunction().apply(args));
+        return !(args.length == 2 && EqualsFunction.equal(args[0], args[1]));
     }
 }
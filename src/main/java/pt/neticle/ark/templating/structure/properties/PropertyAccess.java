@@ -0,0 +1,359 @@
+package pt.neticle.ark.templating.structure.properties;
+
+import pt.neticle.ark.templating.exception.RenderingException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Reads named properties from objects, as done by reference expressions such as "foo.bar" and by
+ * the Get function.
+ *
+ * Accessors are looked up once per type and property name and cached with a {@link ClassValue}, so
+ * that the cache doesn't keep classes from being unloaded. Custom resolvers are consulted first,
+ * followed by the built-in ones, which handle, in order:
+ *
+ * - Maps, by calling get(property)
+ * - Map entries, for the "key" and "value" properties
+ * - Records, by calling the accessor of the component with the same name
+ * - Objects with a public getter, getProperty() or isProperty() for booleans
+ * - Objects with a public field with the same name
+ *
+ * Properties that can't be resolved are read as null.
+ */
+public class PropertyAccess
+{
+    private static final PropertyAccessor missing = (target) -> null;
+
+    private static final Method isRecord = lookupIsRecord();
+
+    private static final PropertyResolver[] builtInResolvers = new PropertyResolver[]
+    {
+        PropertyAccess::resolveMap,
+        PropertyAccess::resolveMapEntry,
+        PropertyAccess::resolveRecordComponent,
+        PropertyAccess::resolveGetter,
+        PropertyAccess::resolveField
+    };
+
+    private volatile PropertyResolver[] resolvers;
+    private volatile ClassValue<Map<String, PropertyAccessor>> cache;
+
+    public PropertyAccess ()
+    {
+        resolvers = builtInResolvers;
+        cache = newCache();
+    }
+
+    /**
+     * Registers a resolver to be consulted before the ones registered previously and before the
+     * built-in ones. Accessors cached so far are discarded.
+     *
+     * @param resolver
+     */
+    public synchronized void addResolver (PropertyResolver resolver)
+    {
+        PropertyResolver[] updated = new PropertyResolver[resolvers.length + 1];
+        updated[0] = resolver;
+        System.arraycopy(resolvers, 0, updated, 1, resolvers.length);
+
+        resolvers = updated;
+        cache = newCache();
+    }
+
+    /**
+     * Registers every resolver made available through {@link ServiceLoader} by the given class loader,
+     * such as the ones generated for {@link TemplateModel} classes. Entries that can't be loaded, e.g.
+     * left over from a model that no longer exists, are skipped.
+     *
+     * @param classLoader
+     */
+    public synchronized void addServiceResolvers (ClassLoader classLoader)
+    {
+        Iterator<PropertyResolver> it = ServiceLoader.load(PropertyResolver.class, classLoader).iterator();
+
+        while(true)
+        {
+            try
+            {
+                if(!it.hasNext())
+                {
+                    break;
+                }
+
+                addResolver(it.next());
+            } catch(ServiceConfigurationError e)
+            {
+                // skip this entry, the next one may still be fine
+            }
+        }
+    }
+
+    /**
+     * Reads a property from the given object. Suppliers are unwrapped before the property is read.
+     *
+     * @param target The object to read the property from
+     * @param property The name of the property
+     * @return The value of the property, or null if the target is null or has no such property
+     */
+    public Object get (Object target, String property)
+    {
+        if(target instanceof Supplier)
+        {
+            target = ((Supplier) target).get();
+        }
+
+        if(target == null)
+        {
+            return null;
+        }
+
+        return getAccessor(target.getClass(), property).get(target);
+    }
+
+    /**
+     * @param type
+     * @param property
+     * @return The accessor for the given property of the given type, never null
+     */
+    public PropertyAccessor getAccessor (Class<?> type, String property)
+    {
+        final Map<String, PropertyAccessor> accessors = cache.get(type);
+        final PropertyAccessor accessor = accessors.get(property);
+
+        if(accessor != null)
+        {
+            return accessor;
+        }
+
+        return accessors.computeIfAbsent(property, (p) -> resolve(type, p));
+    }
+
+    private PropertyAccessor resolve (Class<?> type, String property)
+    {
+        for(PropertyResolver resolver : resolvers)
+        {
+            PropertyAccessor accessor = resolver.resolve(type, property);
+
+            if(accessor != null)
+            {
+                return accessor;
+            }
+        }
+
+        return missing;
+    }
+
+    private static ClassValue<Map<String, PropertyAccessor>> newCache ()
+    {
+        return new ClassValue<Map<String, PropertyAccessor>>()
+        {
+            @Override
+            protected Map<String, PropertyAccessor> computeValue (Class<?> type)
+            {
+                return new ConcurrentHashMap<>();
+            }
+        };
+    }
+
+    private static PropertyAccessor resolveMap (Class<?> type, String property)
+    {
+        if(!Map.class.isAssignableFrom(type))
+        {
+            return null;
+        }
+
+        return (target) -> ((Map) target).get(property);
+    }
+
+    private static PropertyAccessor resolveMapEntry (Class<?> type, String property)
+    {
+        if(!Map.Entry.class.isAssignableFrom(type))
+        {
+            return null;
+        }
+
+        // https://bugs.java.com/bugdatabase/view_bug.do?bug_id=4207233
+        switch(property)
+        {
+            case "key": return (target) -> ((Map.Entry) target).getKey();
+            case "value": return (target) -> ((Map.Entry) target).getValue();
+            default: return missing;
+        }
+    }
+
+    private static PropertyAccessor resolveRecordComponent (Class<?> type, String property)
+    {
+        if(isRecord == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            if(!(Boolean) isRecord.invoke(type))
+            {
+                return null;
+            }
+
+            return methodAccessor(type, type.getMethod(property), property);
+        } catch(NoSuchMethodException | IllegalAccessException | InvocationTargetException e)
+        {
+            return null;
+        }
+    }
+
+    private static PropertyAccessor resolveGetter (Class<?> type, String property)
+    {
+        if(property.isEmpty())
+        {
+            return null;
+        }
+
+        final String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+
+        try
+        {
+            return methodAccessor(type, type.getMethod("get" + suffix), property);
+        } catch(NoSuchMethodException e)
+        {
+            // try the boolean variant
+        }
+
+        try
+        {
+            Method getter = type.getMethod("is" + suffix);
+
+            if(getter.getReturnType() == boolean.class || getter.getReturnType() == Boolean.class)
+            {
+                return methodAccessor(type, getter, property);
+            }
+        } catch(NoSuchMethodException e)
+        {
+            // not a bean property
+        }
+
+        return null;
+    }
+
+    private static PropertyAccessor resolveField (Class<?> type, String property)
+    {
+        final Field field;
+
+        try
+        {
+            field = type.getField(property);
+        } catch(NoSuchFieldException e)
+        {
+            return null;
+        }
+
+        if(Modifier.isStatic(field.getModifiers()) || !isAccessible(field.getDeclaringClass(), field))
+        {
+            return null;
+        }
+
+        return (target) ->
+        {
+            try
+            {
+                return field.get(target);
+            } catch(IllegalAccessException e)
+            {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Creates an accessor invoking the given method, or a method with the same signature declared by a
+     * public super-type if the class declaring the method isn't public itself.
+     */
+    private static PropertyAccessor methodAccessor (Class<?> type, Method method, String property)
+    {
+        if(Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class)
+        {
+            return null;
+        }
+
+        final Method invocable = findAccessibleMethod(method.getDeclaringClass(), method);
+
+        if(invocable == null)
+        {
+            return missing;
+        }
+
+        return (target) ->
+        {
+            try
+            {
+                return invocable.invoke(target);
+            } catch(IllegalAccessException e)
+            {
+                return null;
+            } catch(InvocationTargetException e)
+            {
+                throw new RenderingException("Unable to read property " + property + " of " + type.getName(), e.getCause());
+            }
+        };
+    }
+
+    private static Method findAccessibleMethod (Class<?> type, Method method)
+    {
+        if(type == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            Method candidate = type.getDeclaredMethod(method.getName(), method.getParameterTypes());
+
+            if(isAccessible(type, candidate))
+            {
+                return candidate;
+            }
+        } catch(NoSuchMethodException e)
+        {
+            // keep looking in the super-types
+        }
+
+        for(Class<?> iface : type.getInterfaces())
+        {
+            Method found = findAccessibleMethod(iface, method);
+
+            if(found != null)
+            {
+                return found;
+            }
+        }
+
+        return findAccessibleMethod(type.getSuperclass(), method);
+    }
+
+    private static boolean isAccessible (Class<?> declaringClass, Member member)
+    {
+        return Modifier.isPublic(member.getModifiers()) && Modifier.isPublic(declaringClass.getModifiers());
+    }
+
+    private static Method lookupIsRecord ()
+    {
+        try
+        {
+            return Class.class.getMethod("isRecord");
+        } catch(NoSuchMethodException e)
+        {
+            // records aren't available on this runtime
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pt.neticle.ark.templating.structure.properties;
+
+import pt.neticle.ark.templating.exception.RenderingException;
+
+/**
+ * Reads one specific property from objects of one specific type.
+ *
+ * Accessors are created by a {@link PropertyResolver} once per type and property name, and then
+ * reused for every object of that type.
+ */
+@FunctionalInterface
+public interface PropertyAccessor
+{
+    /**
+     * @param target The object to read the property from, never null
+     * @return The value of the property
+     * @throws RenderingException
+     */
+    Object get (Object target) throws RenderingException;
+}
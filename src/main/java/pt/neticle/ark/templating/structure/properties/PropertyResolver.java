@@ -0,0 +1,18 @@
+package pt.neticle.ark.templating.structure.properties;
+
+/**
+ * Provides property accessors for types it knows how to handle.
+ *
+ * Custom resolvers can be registered through the engine initializer, and are consulted before the
+ * built-in ones. Whatever a resolver returns is cached for the given type and property name.
+ */
+@FunctionalInterface
+public interface PropertyResolver
+{
+    /**
+     * @param type The type of the objects the property is going to be read from
+     * @param property The name of the property
+     * @return An accessor for the property, or null if this resolver doesn't handle it
+     */
+    PropertyAccessor resolve (Class<?> type, String property);
+}
@@ -0,0 +1,22 @@
+package pt.neticle.ark.templating.structure.properties;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class whose properties are read from templates.
+ *
+ * When the library is on the annotation processor path, {@link TemplateModelProcessor} generates a
+ * {@link PropertyResolver} for each marked class, with one accessor per getter, record component and
+ * public field, calling them directly instead of through reflection. Generated resolvers are registered
+ * as services and picked up by the engine initializer.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface TemplateModel
+{
+}
@@ -0,0 +1,313 @@
+package pt.neticle.ark.templating.structure.properties;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Generates a {@link PropertyResolver} for every class annotated with {@link TemplateModel}.
+ *
+ * The generated resolver is named after the model, e.g. com.example.User_TemplateAccessors, and maps
+ * each property name to an accessor calling the model's method or reading its field directly. The
+ * properties considered, and the names they're read by, are the same the built-in reflective resolvers
+ * would use, so templates render the same with or without the processor.
+ *
+ * All generated resolvers are listed in META-INF/services, to be found through {@link java.util.ServiceLoader}.
+ */
+@SupportedAnnotationTypes("pt.neticle.ark.templating.structure.properties.TemplateModel")
+public class TemplateModelProcessor extends AbstractProcessor
+{
+    private static final String servicesFile = "META-INF/services/" + PropertyResolver.class.getName();
+    private static final String suffix = "_TemplateAccessors";
+
+    private final Set<String> generated = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion ()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process (Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        if(roundEnv.processingOver())
+        {
+            if(!generated.isEmpty())
+            {
+                writeServicesFile();
+            }
+
+            return false;
+        }
+
+        for(TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(TemplateModel.class)))
+        {
+            if(type.getModifiers().contains(Modifier.PRIVATE) || isInnerClassOfPrivate(type))
+            {
+                error(type, "@TemplateModel classes must not be private");
+                continue;
+            }
+
+            try
+            {
+                generated.add(generate(type));
+            } catch(IOException e)
+            {
+                error(type, "Unable to generate template accessors: " + e.getMessage());
+            }
+        }
+
+        return true;
+    }
+
+    private String generate (TypeElement type) throws IOException
+    {
+        final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        final String modelName = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+        final String className = flatName(type) + suffix;
+        final String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+
+        final Map<String, String> accessors = collectAccessors(type, packageName);
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+
+        try(PrintWriter out = new PrintWriter(file.openWriter()))
+        {
+            if(!packageName.isEmpty())
+            {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+
+            out.println("import pt.neticle.ark.templating.structure.properties.PropertyAccessor;");
+            out.println("import pt.neticle.ark.templating.structure.properties.PropertyResolver;");
+            out.println();
+            out.println("/**");
+            out.println(" * Property accessors for " + modelName + ", generated by " + getClass().getName() + ".");
+            out.println(" */");
+            out.println("public final class " + className + " implements PropertyResolver");
+            out.println("{");
+            out.println("    @Override");
+            out.println("    public PropertyAccessor resolve (Class<?> type, String property)");
+            out.println("    {");
+            out.println("        if(!" + modelName + ".class.isAssignableFrom(type))");
+            out.println("        {");
+            out.println("            return null;");
+            out.println("        }");
+            out.println();
+            out.println("        switch(property)");
+            out.println("        {");
+
+            for(Map.Entry<String, String> accessor : accessors.entrySet())
+            {
+                out.println("            case \"" + accessor.getKey() + "\":");
+                out.println("                return (target) -> ((" + modelName + ") target)." + accessor.getValue() + ";");
+            }
+
+            out.println("            default:");
+            out.println("                return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+
+        return qualifiedName;
+    }
+
+    /**
+     * Finds every property of the given type, in the same order of precedence as the reflective resolvers:
+     * record components, then getters, then public fields.
+     *
+     * @return Key: Property name, Value: Expression reading the property from the model
+     */
+    private Map<String, String> collectAccessors (TypeElement type, String packageName)
+    {
+        final Map<String, String> accessors = new LinkedHashMap<>();
+        final List<? extends Element> members = processingEnv.getElementUtils().getAllMembers(type);
+        final List<ExecutableElement> methods = new ArrayList<>();
+
+        for(ExecutableElement method : ElementFilter.methodsIn(members))
+        {
+            if(isReadable(method, packageName) && method.getParameters().isEmpty() &&
+                method.getReturnType().getKind() != TypeKind.VOID &&
+                !((TypeElement) method.getEnclosingElement()).getQualifiedName().contentEquals("java.lang.Object"))
+            {
+                methods.add(method);
+            }
+        }
+
+        if(type.getKind().name().equals("RECORD"))
+        {
+            Set<String> components = new HashSet<>();
+
+            for(Element element : type.getEnclosedElements())
+            {
+                if(element.getKind().name().equals("RECORD_COMPONENT"))
+                {
+                    components.add(element.getSimpleName().toString());
+                }
+            }
+
+            for(ExecutableElement method : methods)
+            {
+                String name = method.getSimpleName().toString();
+
+                if(components.contains(name))
+                {
+                    accessors.putIfAbsent(name, name + "()");
+                }
+            }
+        }
+
+        for(String prefix : new String[] { "get", "is" })
+        {
+            for(ExecutableElement method : methods)
+            {
+                String name = method.getSimpleName().toString();
+
+                if(name.length() <= prefix.length() || !name.startsWith(prefix) ||
+                    (prefix.equals("is") && !isBoolean(method.getReturnType())))
+                {
+                    continue;
+                }
+
+                // The reflective resolver upper-cases the first letter of the property name, so both
+                // spellings lead to the same method
+                String property = name.substring(prefix.length());
+                String decapitalized = Character.toLowerCase(property.charAt(0)) + property.substring(1);
+
+                accessors.putIfAbsent(decapitalized, name + "()");
+                accessors.putIfAbsent(property, name + "()");
+            }
+        }
+
+        for(VariableElement field : ElementFilter.fieldsIn(members))
+        {
+            if(field.getModifiers().contains(Modifier.PUBLIC) && !field.getModifiers().contains(Modifier.STATIC))
+            {
+                accessors.putIfAbsent(field.getSimpleName().toString(), field.getSimpleName().toString());
+            }
+        }
+
+        return accessors;
+    }
+
+    /**
+     * Members are readable by the generated class if they're public, or if they aren't private and are
+     * declared in the same package the class is generated in.
+     */
+    private boolean isReadable (Element member, String packageName)
+    {
+        Set<Modifier> modifiers = member.getModifiers();
+
+        if(modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE))
+        {
+            return false;
+        }
+
+        return modifiers.contains(Modifier.PUBLIC) ||
+            processingEnv.getElementUtils().getPackageOf(member).getQualifiedName().contentEquals(packageName);
+    }
+
+    private boolean isBoolean (TypeMirror type)
+    {
+        return type.getKind() == TypeKind.BOOLEAN || type.toString().equals("java.lang.Boolean");
+    }
+
+    private static boolean isInnerClassOfPrivate (TypeElement type)
+    {
+        for(Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement())
+        {
+            if(e.getModifiers().contains(Modifier.PRIVATE))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The simple name of the type, prefixed by the names of the types enclosing it, separated by underscores
+     */
+    private static String flatName (TypeElement type)
+    {
+        String name = type.getSimpleName().toString();
+
+        for(Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement())
+        {
+            name = e.getSimpleName() + "_" + name;
+        }
+
+        return name;
+    }
+
+    /**
+     * Writes the services file listing the generated resolvers, keeping the entries of any previous
+     * file, so that incremental compilations don't lose resolvers of models that weren't recompiled.
+     */
+    private void writeServicesFile ()
+    {
+        final Set<String> entries = new TreeSet<>(generated);
+
+        try
+        {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", servicesFile);
+
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8)))
+            {
+                String line;
+
+                while((line = reader.readLine()) != null)
+                {
+                    if(!line.trim().isEmpty())
+                    {
+                        entries.add(line.trim());
+                    }
+                }
+            }
+        } catch(IOException | IllegalArgumentException e)
+        {
+            // no previous file
+        }
+
+        try
+        {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", servicesFile);
+
+            try(Writer writer = file.openWriter())
+            {
+                for(String entry : entries)
+                {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch(IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + servicesFile + ": " + e.getMessage());
+        }
+    }
+
+    private void error (Element element, String message)
+    {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,88 @@
+package test.ark.templating;
+
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.renderer.Scope;
+import pt.neticle.ark.templating.structure.ReadableElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Compares the throughput of rendering a template for many scopes in a loop with batch renders of
+ * increasing parallelism. Run with the test classpath, e.g. through the IDE.
+ */
+public class BatchRenderBenchmark
+{
+    private static final int items = 200_000;
+
+    public static void main (String[] args) throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        engine.registerTemplate(new ByteArrayInputStream((
+            "<template name=\"test\">" +
+            "<html><body><h1>Hello, {{ = name }}</h1>" +
+            "<p>Here are your recommendations for this week:</p>" +
+            "<ul><template is=\"foreach\" data=\"{{ items }}\" as=\"i\"><li>{{ = i }}</li></template></ul>" +
+            "<p class=\"footer\">You're receiving this email because you subscribed.</p></body></html>" +
+            "</template>").getBytes(StandardCharsets.UTF_8)));
+
+        ReadableElement template = engine.getTemplate("test");
+
+        for(int round = 0; round < 2; round++)
+        {
+            long start = System.nanoTime();
+
+            for(Scope scope : (Iterable<Scope>) scopes()::iterator)
+            {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                engine.render(template, scope, baos);
+                discard().write(baos.toByteArray());
+            }
+
+            report("loop", System.nanoTime() - start);
+
+            for(int parallelism = 1; parallelism <= Runtime.getRuntime().availableProcessors(); parallelism *= 2)
+            {
+                start = System.nanoTime();
+                engine.renderBatch(template, scopes(), (index, scope) -> discard(), parallelism);
+                report("batch x" + parallelism, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static Stream<Scope> scopes ()
+    {
+        return IntStream.range(0, items).mapToObj((i) -> MainScope.builder()
+            .with("name", "user" + i)
+            .with("items", Arrays.asList("first", "second", "third", "fourth"))
+            .build());
+    }
+
+    private static OutputStream discard ()
+    {
+        return new OutputStream()
+        {
+            @Override
+            public void write (int b)
+            {
+            }
+
+            @Override
+            public void write (byte[] b, int off, int len)
+            {
+            }
+        };
+    }
+
+    private static void report (String name, long elapsed)
+    {
+        System.out.printf("%-12s %10.0f renders/s%n", name, items / (elapsed / 1e9));
+    }
+}
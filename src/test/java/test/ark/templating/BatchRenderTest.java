@@ -0,0 +1,80 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.renderer.Scope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class BatchRenderTest
+{
+    @Test
+    public void rendersEveryScope () throws Exception
+    {
+        TemplatingEngine engine = engine();
+        Map<Long, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+
+        long rendered = engine.renderBatch(engine.getTemplate("test"), scopes(1000), (index, scope) ->
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            outputs.put(index, baos);
+            return baos;
+        }, 4);
+
+        Assert.assertEquals(1000, rendered);
+        Assert.assertEquals(1000, outputs.size());
+
+        for(long i = 0; i < 1000; i++)
+        {
+            Assert.assertEquals("<p>Hello, user" + i + "</p>",
+                new String(outputs.get(i).toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void stopsAtFirstFailure () throws Exception
+    {
+        TemplatingEngine engine = engine();
+
+        try
+        {
+            engine.renderBatch(engine.getTemplate("test"), scopes(1000), (index, scope) ->
+            {
+                if(index == 10)
+                {
+                    throw new IOException("sink unavailable");
+                }
+
+                return new ByteArrayOutputStream();
+            }, 4);
+
+            Assert.fail("Expected the failure of the sink to be rethrown");
+        } catch(IOException e)
+        {
+            Assert.assertEquals("sink unavailable", e.getMessage());
+        }
+    }
+
+    private static Stream<Scope> scopes (int count)
+    {
+        return IntStream.range(0, count).mapToObj((i) -> MainScope.builder().with("name", "user" + i).build());
+    }
+
+    private static TemplatingEngine engine () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+        engine.registerTemplate(new ByteArrayInputStream(
+            "<template name=\"test\"><p>Hello, {{ = name }}</p></template>".getBytes(StandardCharsets.UTF_8)));
+
+        return engine;
+    }
+}
@@ -0,0 +1,99 @@
+package test.ark.templating;
+
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.Compression;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.renderer.Scope;
+import pt.neticle.ark.templating.structure.ReadableElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares rendering through a plain GZIPOutputStream with the engine's compressed renders, in compressed
+ * size and time per render. Run with the test classpath, e.g. through the IDE.
+ */
+public class CompressionBenchmark
+{
+    private static final int warmup = 20_000;
+    private static final int iterations = 100_000;
+
+    public static void main (String[] args) throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        engine.registerTemplate(new ByteArrayInputStream((
+            "<template name=\"test\">" +
+            "<html><head><title>{{ = title }}</title>" +
+            "<link rel=\"stylesheet\" href=\"/static/main.css\"></link></head>" +
+            "<body><header class=\"site-header\"><nav class=\"site-nav\"><a href=\"/\">Home</a>" +
+            "<a href=\"/about\">About</a><a href=\"/contact\">Contact</a></nav></header>" +
+            "<main class=\"content\"><p class=\"greeting\">Hello, {{ = name }}</p>" +
+            "<template is=\"foreach\" data=\"{{ items }}\" as=\"i\"><div class=\"item\">{{ = i }}</div></template>" +
+            "</main><footer class=\"site-footer\">All rights reserved</footer></body></html>" +
+            "</template>").getBytes(StandardCharsets.UTF_8)));
+
+        ReadableElement template = engine.getTemplate("test");
+        Scope scope = MainScope.builder()
+            .with("title", "Home")
+            .with("name", "joe")
+            .with("items", Arrays.asList("one", "two", "three"))
+            .build();
+
+        run("GZIPOutputStream", () -> renderWithGzipOutputStream(engine, template, scope));
+
+        for(Compression compression : Compression.values())
+        {
+            run(compression.name(), () -> render(engine, template, scope, compression));
+        }
+    }
+
+    private static void run (String name, Render render) throws IOException
+    {
+        for(int i = 0; i < warmup; i++)
+        {
+            render.run();
+        }
+
+        long size = 0;
+        long start = System.nanoTime();
+
+        for(int i = 0; i < iterations; i++)
+        {
+            size = render.run();
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-24s %6d bytes %8.2f us/render%n", name, size, elapsed / 1000.0 / iterations);
+    }
+
+    private static int renderWithGzipOutputStream (TemplatingEngine engine, ReadableElement template, Scope scope) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try(GZIPOutputStream gzip = new GZIPOutputStream(baos, true))
+        {
+            engine.render(template, scope, gzip);
+        }
+
+        return baos.size();
+    }
+
+    private static int render (TemplatingEngine engine, ReadableElement template, Scope scope, Compression compression) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(template, scope, baos, compression);
+
+        return baos.size();
+    }
+
+    private interface Render
+    {
+        int run () throws IOException;
+    }
+}
@@ -0,0 +1,134 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.Compression;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.renderer.Scope;
+import pt.neticle.ark.templating.structure.ReadableElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class CompressionTest
+{
+    private static final String page =
+        "<template name=\"test\">" +
+        "<html><head><title>{{ = title }}</title></head>" +
+        "<body><t:flush></t:flush><p class=\"greeting\">Hello, {{ = name }}</p></body></html>" +
+        "</template>";
+
+    private static final String expected =
+        "<html><head><title>Home</title></head><body><p class=\"greeting\">Hello, joe</p></body></html>";
+
+    @Test
+    public void roundTripsEveryFormat () throws Exception
+    {
+        TemplatingEngine engine = engine();
+        ReadableElement template = engine.getTemplate("test");
+
+        byte[] gzip = render(engine, template, Compression.GZIP);
+        Assert.assertEquals(expected, read(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+
+        byte[] deflate = render(engine, template, Compression.DEFLATE);
+        Assert.assertEquals(expected, read(new InflaterInputStream(new ByteArrayInputStream(deflate))));
+
+        byte[] withDictionary = render(engine, template, Compression.DEFLATE_WITH_DICTIONARY);
+        Assert.assertEquals(expected, inflate(withDictionary, engine.getCompressionDictionary(template)));
+
+        Assert.assertTrue(withDictionary.length < deflate.length);
+    }
+
+    @Test
+    public void flushesCompressedData () throws Exception
+    {
+        TemplatingEngine engine = engine();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), scope(), new ByteArrayOutputStream()
+        {
+            @Override
+            public void flush ()
+            {
+                // the first flush is the one at t:flush, everything before it must be readable already
+                if(baos.size() == 0)
+                {
+                    baos.write(toByteArray(), 0, size());
+                }
+            }
+        }, Compression.DEFLATE);
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(baos.toByteArray());
+
+        byte[] buffer = new byte[1024];
+        int length = inflater.inflate(buffer);
+
+        Assert.assertEquals("<html><head><title>Home</title></head><body>",
+            new String(buffer, 0, length, StandardCharsets.UTF_8));
+    }
+
+    private static TemplatingEngine engine () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+        engine.registerTemplate(new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)));
+
+        return engine;
+    }
+
+    private static Scope scope ()
+    {
+        return MainScope.builder().with("title", "Home").with("name", "joe").build();
+    }
+
+    private static byte[] render (TemplatingEngine engine, ReadableElement template, Compression compression) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(template, scope(), baos, compression);
+
+        return baos.toByteArray();
+    }
+
+    private static String inflate (byte[] data, byte[] dictionary) throws Exception
+    {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+
+        while(!inflater.finished())
+        {
+            int length = inflater.inflate(buffer);
+
+            if(length == 0 && inflater.needsDictionary())
+            {
+                inflater.setDictionary(dictionary);
+            }
+
+            baos.write(buffer, 0, length);
+        }
+
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String read (InputStream is) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+
+        while((length = is.read(buffer)) != -1)
+        {
+            baos.write(buffer, 0, length);
+        }
+
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
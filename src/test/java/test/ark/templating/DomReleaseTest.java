@@ -0,0 +1,55 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class DomReleaseTest
+{
+    @Test
+    public void releasesDomAndReprocessesDependents () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer()
+            .withDomRelease()
+            .build();
+
+        register(engine, "<template name=\"x:box\"><div class=\"box\"><slot name=\"title\"></slot><slot></slot></div></template>");
+        register(engine, "<template name=\"x:meta\"><t:meta key=\"title\" value=\"Test\"></t:meta></template>");
+        register(engine,
+            "<template name=\"test\">" +
+            "<x:box><b slot=\"title\">{{ = name }}</b><p>content</p></x:box>" +
+            "</template>");
+
+        Assert.assertEquals("<div class=\"box\"><b>joe</b><p>content</p></div>", render(engine));
+
+        TemplateRootElement test = (TemplateRootElement) engine.getTemplate("test");
+        Assert.assertTrue(test.isDomReleased());
+        Assert.assertTrue(test.getChilds().isEmpty());
+        Assert.assertEquals("Test", engine.getTemplateMetaData("x:meta").get("title"));
+        Assert.assertTrue(((TemplateRootElement) engine.getTemplate("x:box")).hasUnassignedSlot());
+
+        // The page has to be pre-processed again from its declaration
+        register(engine, "<template name=\"x:box\"><section><slot></slot><slot name=\"title\"></slot></section></template>");
+
+        Assert.assertEquals("<section><p>content</p><b>joe</b></section>", render(engine));
+    }
+
+    private static String render (TemplatingEngine engine) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder().with("name", "joe").build(), baos);
+
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
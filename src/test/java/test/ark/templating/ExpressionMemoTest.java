@@ -0,0 +1,97 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.structure.functions.FunctionHandler1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExpressionMemoTest
+{
+    @Test
+    public void sharesResultsAcrossNestedScopes () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"x:badge\"><b>{{ = permissions }}</b></template>");
+        register(engine, "<template name=\"x:shadow\"><i>{{ = permissions }}</i></template>");
+        register(engine,
+            "<template name=\"test\">{{ = permissions }}" +
+            "<template is=\"foreach\" data=\"{{ items }}\"><li><x:badge></x:badge>{{ = item }}</li></template>" +
+            "<x:shadow permissions=\"none\"></x:shadow>" +
+            "</template>");
+
+        AtomicInteger calls = new AtomicInteger();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder()
+            .with("permissions", () -> "admin" + calls.incrementAndGet())
+            .with("items", Arrays.asList("a", "b", "c"))
+            .build(), baos);
+
+        Assert.assertEquals("admin1<li><b>admin1</b>a</li><li><b>admin1</b>b</li><li><b>admin1</b>c</li><i>none</i>",
+            new String(baos.toByteArray(), StandardCharsets.UTF_8));
+
+        // Evaluated once for the whole render, the shadowing attribute doesn't reach the supplier
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void evaluatesExpressionsWithoutVariablesEveryTime () throws Exception
+    {
+        AtomicInteger counter = new AtomicInteger();
+
+        TemplatingEngine engine = TemplatingEngine.initializer()
+            .withFunction("Next", (FunctionHandler1<Integer>) step -> counter.addAndGet(Integer.parseInt(step.toString())))
+            .build();
+
+        register(engine,
+            "<template name=\"test\">" +
+            "<template is=\"foreach\" data=\"{{ items }}\"><li>{{ = Next(1) }}</li></template>" +
+            "</template>");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder()
+            .with("items", Arrays.asList("a", "b", "c"))
+            .build(), baos);
+
+        Assert.assertEquals("<li>1</li><li>2</li><li>3</li>", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsNothingBetweenRenders () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"x:name\"><p>{{ = user.name }}</p></template>");
+        register(engine, "<template name=\"test\"><x:name></x:name></template>");
+
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", "alice");
+
+        MainScope scope = MainScope.builder().with("user", user).build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), scope, baos);
+        Assert.assertEquals("<p>alice</p>", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+
+        user.put("name", "bob");
+
+        baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), scope, baos);
+        Assert.assertEquals("<p>bob</p>", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import pt.neticle.ark.templating.renderer.MainScope;
 import pt.neticle.ark.templating.structure.expressions.*;
 import pt.neticle.ark.templating.structure.functions.FunctionCatalog;
+import pt.neticle.ark.templating.structure.functions.FunctionHandler2;
 
 import java.text.ParseException;
 
@@ -90,6 +91,127 @@ public class ExpressionsTest
         Assert.assertTrue(fn.getArgumentExpressions()[1] instanceof StringLiteralExpression);
     }
 
+    @Test
+    public void operatorExp () throws ParseException
+    {
+        MainScope scope = MainScope.builder()
+            .with("one", 1)
+            .with("big", new java.math.BigDecimal("10.5"))
+            .with("name", "joe")
+            .build();
+
+        Expression exp = matcher.match("a || b && c");
+        Assert.assertTrue(exp instanceof OperatorExpression);
+        Assert.assertEquals(OperatorExpression.Operator.OR, ((OperatorExpression) exp).getOperator());
+
+        Assert.assertEquals(true, resolve(matcher, "one == 1", scope));
+        Assert.assertEquals(true, resolve(matcher, "one < big", scope));
+        Assert.assertEquals(false, resolve(matcher, "big <= 10", scope));
+        Assert.assertEquals(true, resolve(matcher, "name == 'joe' && !(one > 1)", scope));
+        Assert.assertEquals(true, resolve(matcher, "'a' < 'b'", scope));
+        Assert.assertEquals(false, resolve(matcher, "missing > 1", scope));
+        Assert.assertEquals(true, resolve(matcher, "Equals(name, 'a && b') || true", scope));
+        Assert.assertEquals(true, resolve(matcher, "one == 1 == true", scope));
+
+        Assert.assertTrue(matcher.match("= a || 'default'") instanceof OutputExpression);
+        Assert.assertTrue(matcher.match("(a)") instanceof ObjectReferenceExpression);
+        Assert.assertTrue(matcher.match("10") instanceof LiteralExpression);
+    }
+
+    @Test
+    public void fixedArityFunctionCall () throws ParseException
+    {
+        FunctionCatalog catalog = new FunctionCatalog();
+        catalog.registerHandler("Concat", (FunctionHandler2<String>) (a, b) -> a + "" + b);
+
+        ExpressionMatcher matcher = new ExpressionMatcher(catalog);
+        MainScope scope = MainScope.builder().with("name", "joe").build();
+
+        Assert.assertEquals("hi joe", ((FunctionCallExpression) matcher.match("Concat('hi ', name)")).resolve(scope));
+        Assert.assertEquals("hinull", ((FunctionCallExpression) matcher.match("Concat('hi')")).resolve(scope));
+        Assert.assertEquals(true, ((FunctionCallExpression) matcher.match("Equals(name, 'joe')")).resolve(scope));
+        Assert.assertEquals(false, ((FunctionCallExpression) matcher.match("Equals(name, 'joe', 'x')")).resolve(scope));
+        Assert.assertEquals("yes", ((FunctionCallExpression) matcher.match("If(NotEmpty(name), 'yes', 'no')")).resolve(scope));
+    }
+
+    @Test
+    public void frozenFunctionCatalog () throws ParseException
+    {
+        FunctionCatalog catalog = new FunctionCatalog();
+        catalog.freeze();
+
+        ExpressionMatcher matcher = new ExpressionMatcher(catalog);
+
+        Assert.assertTrue(matcher.match("NotEmpty(foo)") instanceof FunctionCallExpression);
+
+        try
+        {
+            matcher.match("foo(bar)");
+            Assert.fail("Unknown function was accepted");
+        } catch(ParseException e)
+        {
+            Assert.assertEquals("Unknown function: foo", e.getMessage());
+        }
+
+        try
+        {
+            catalog.registerHandler("foo", (args) -> null);
+            Assert.fail("Frozen catalog was changed");
+        } catch(IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void propertyAccess () throws ParseException
+    {
+        FunctionCatalog catalog = new FunctionCatalog();
+        catalog.getPropertyAccess().addResolver((type, property) ->
+            type == StringBuilder.class && property.equals("size") ? (target) -> ((StringBuilder) target).length() : null);
+
+        ExpressionMatcher matcher = new ExpressionMatcher(catalog);
+        MainScope scope = MainScope.builder()
+            .with("bean", new Bean())
+            .with("entry", java.util.Collections.singletonMap("k", "v").entrySet().iterator().next())
+            .with("builder", new StringBuilder("abc"))
+            .build();
+
+        Assert.assertEquals("field", resolve(matcher, "bean.field", scope));
+        Assert.assertEquals("getter", resolve(matcher, "bean.name", scope));
+        Assert.assertEquals(true, resolve(matcher, "bean.active", scope));
+        Assert.assertEquals("getter", resolve(matcher, "bean.self.name", scope));
+        Assert.assertNull(resolve(matcher, "bean.unknown", scope));
+        Assert.assertEquals("v", resolve(matcher, "entry.value", scope));
+        Assert.assertEquals(3, resolve(matcher, "builder.size", scope));
+        Assert.assertEquals("getter", resolve(matcher, "Get(bean, 'name')", scope));
+    }
+
+    private static Object resolve (ExpressionMatcher matcher, String expr, MainScope scope) throws ParseException
+    {
+        return matcher.match(expr).getResolver().apply(scope);
+    }
+
+    public static class Bean
+    {
+        public final String field = "field";
+
+        public String getName ()
+        {
+            return "getter";
+        }
+
+        public boolean isActive ()
+        {
+            return true;
+        }
+
+        public Bean getSelf ()
+        {
+            return this;
+        }
+    }
+
     private FunctionCallExpression testFunctionCall (String expr) throws ParseException
     {
         Expression exp = matcher.match(expr);
@@ -0,0 +1,78 @@
+package test.ark.templating;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.MainScope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class FlightRecorderTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void emitsParsePrepareAndRenderEvents () throws Exception
+    {
+        Path dump = folder.getRoot().toPath().resolve("recording.jfr");
+
+        try(Recording recording = new Recording())
+        {
+            recording.enable("pt.neticle.ark.templating.Parse").withThreshold(Duration.ZERO);
+            recording.enable("pt.neticle.ark.templating.Prepare").withThreshold(Duration.ZERO);
+            recording.enable("pt.neticle.ark.templating.Render").withThreshold(Duration.ZERO);
+            recording.start();
+
+            TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+            register(engine, "<template name=\"x:item\"><b>{{ = label }}</b></template>");
+            register(engine, "<template name=\"test\"><div><template is=\"foreach\" data=\"{{ items }}\" as=\"i\">" +
+                "<x:item label=\"{{ i }}\"></x:item></template></div></template>");
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            engine.render(engine.getTemplate("test"),
+                MainScope.builder().with("items", new String[] { "a", "b", "c" }).build(), baos);
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+
+        Assert.assertEquals(2, count(events, "pt.neticle.ark.templating.Parse"));
+        Assert.assertEquals(2, count(events, "pt.neticle.ark.templating.Prepare"));
+
+        List<RecordedEvent> renders = events.stream()
+            .filter(e -> e.getEventType().getName().equals("pt.neticle.ark.templating.Render"))
+            .collect(Collectors.toList());
+
+        Assert.assertEquals(4, renders.size());
+
+        RecordedEvent top = renders.stream().filter(e -> !e.getBoolean("nested")).findFirst().get();
+        Assert.assertEquals("test", top.getString("templateName"));
+        Assert.assertEquals(3, top.getLong("iterations"));
+        Assert.assertEquals("<div><b>a</b><b>b</b><b>c</b></div>".length(), top.getLong("bytes"));
+    }
+
+    private static long count (List<RecordedEvent> events, String name)
+    {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).count();
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,107 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.MainScope;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+public class HotReloadTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reloadsChangedCreatedAndDeletedTemplates () throws Exception
+    {
+        Path dir = folder.getRoot().toPath();
+
+        write(dir.resolve("x-item.html"), "<template name=\"x:item\"><b>one</b></template>");
+        write(dir.resolve("test.html"), "<template name=\"test\"><div><x:item></x:item></div></template>");
+
+        try(TemplatingEngine engine = TemplatingEngine.initializer()
+            .withSearchDirectory(dir, true)
+            .withHotloadDebounce(50)
+            .build())
+        {
+            Assert.assertEquals("<div><b>one</b></div>", render(engine, "test"));
+
+            // Changing a dependency re-prepares the templates using it
+            write(dir.resolve("x-item.html"), "<template name=\"x:item\"><b>two</b></template>");
+            awaitTrue(() -> render(engine, "test").equals("<div><b>two</b></div>"));
+
+            // New sub-directories are watched as well
+            Path sub = Files.createDirectory(dir.resolve("sub"));
+            write(sub.resolve("other.html"), "<template name=\"other\"><i>other</i></template>");
+            awaitTrue(() -> engine.hasTemplate("other"));
+            Assert.assertEquals("<i>other</i>", render(engine, "other"));
+
+            Files.delete(sub.resolve("other.html"));
+            awaitTrue(() -> !engine.hasTemplate("other"));
+        }
+    }
+
+    @Test
+    public void ignoresFilesWithoutTemplates () throws Exception
+    {
+        Path dir = folder.getRoot().toPath();
+
+        write(dir.resolve("empty.html"), "");
+        write(dir.resolve("test.html"), "<template name=\"test\"><p>test</p></template>");
+
+        try(TemplatingEngine engine = TemplatingEngine.initializer()
+            .withSearchDirectory(dir, true)
+            .withHotloadDebounce(50)
+            .build())
+        {
+            Assert.assertEquals("<p>test</p>", render(engine, "test"));
+
+            write(dir.resolve("empty.html"), "<template name=\"filled\"><i>filled</i></template>");
+            awaitTrue(() -> engine.hasTemplate("filled"));
+
+            // Emptying the file again removes the template it declared
+            write(dir.resolve("empty.html"), "<!-- nothing here -->");
+            awaitTrue(() -> !engine.hasTemplate("filled"));
+        }
+    }
+
+    private static void write (Path file, String content) throws Exception
+    {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String render (TemplatingEngine engine, String name)
+    {
+        try
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            engine.render(engine.getTemplate(name), new MainScope(), baos);
+            return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        } catch(Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void awaitTrue (BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while(!condition.getAsBoolean())
+        {
+            if(System.currentTimeMillis() > deadline)
+            {
+                Assert.fail("Timed out waiting for templates to reload");
+            }
+
+            Thread.sleep(20);
+        }
+    }
+}
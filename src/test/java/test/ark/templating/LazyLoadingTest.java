@@ -0,0 +1,102 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.exception.RenderingException;
+import pt.neticle.ark.templating.renderer.MainScope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class LazyLoadingTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parsesTemplatesOnFirstUse () throws Exception
+    {
+        write("layout.html", "<template name=\"x:layout\"><main><slot></slot></main></template>");
+        write("meta.html", "<template name=\"x:meta\"><t:meta key=\"title\" value=\"Home\"></t:meta></template>");
+        write("page.html", "<template name=\"page\"><x:layout><p>{{ = name }}</p></x:layout></template>");
+        // Only the header is read at build time, so the broken body doesn't prevent the engine from starting
+        write("broken.html", "<template name=\"broken\"><div></span></template>");
+
+        TemplatingEngine engine = TemplatingEngine.initializer()
+            .withLazyLoading()
+            .withSearchDirectory(folder.getRoot().toPath())
+            .build();
+
+        Assert.assertTrue(engine.hasTemplate("page"));
+        Assert.assertTrue(engine.hasTemplate("x:layout"));
+        Assert.assertTrue(engine.hasTemplate("broken"));
+        Assert.assertFalse(engine.hasTemplate("missing"));
+        Assert.assertEquals(4, engine.getRegisteredTemplateNames().size());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("page"), MainScope.builder().with("name", "joe").build(), baos);
+
+        Assert.assertEquals("<main><p>joe</p></main>",
+            new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals("Home", engine.getTemplateMetaData("x:meta").get("title"));
+        Assert.assertNull(engine.getTemplate("missing"));
+
+        try
+        {
+            engine.getTemplate("broken");
+            Assert.fail("Expected the broken template to fail loading");
+        } catch(RenderingException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("broken"));
+        }
+    }
+
+    @Test
+    public void loadsTemplatesOnDemandWhilePublishing () throws Exception
+    {
+        write("card.html", "<template name=\"x:card\"><b><slot></slot></b></template>");
+
+        TemplatingEngine engine = TemplatingEngine.initializer()
+            .withLazyLoading()
+            .withSearchDirectory(folder.getRoot().toPath())
+            .build();
+
+        // Pre-processing the page loads the card, which becomes visible along with the page
+        engine.registerTemplate(new ByteArrayInputStream(
+            "<template name=\"page\"><x:card><i>hi</i></x:card></template>".getBytes(StandardCharsets.UTF_8)));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("page"), MainScope.builder().build(), baos);
+
+        Assert.assertEquals("<b><i>hi</i></b>", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals(2, engine.getRegisteredTemplateNames().size());
+    }
+
+    @Test
+    public void registersTemplatesUnderTheNameTheyDeclare () throws Exception
+    {
+        write("box.html", "<template name=\"x:box\"><i></i></template>");
+
+        TemplatingEngine engine = TemplatingEngine.initializer()
+            .withLazyLoading()
+            .withSearchDirectory(folder.getRoot().toPath())
+            .build();
+
+        write("box.html", "<template name=\"x:crate\"><i></i></template>");
+
+        Assert.assertNull(engine.lookupTemplate("x:box"));
+        Assert.assertFalse(engine.hasTemplate("x:box"));
+        Assert.assertNotNull(engine.lookupTemplate("x:crate"));
+    }
+
+    private void write (String name, String content) throws Exception
+    {
+        Files.write(new File(folder.getRoot(), name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,58 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.MainScope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class MinificationTest
+{
+    @Test
+    public void minifiesStaticContent () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer()
+            .withMinification()
+            .build();
+
+        register(engine,
+            "<template name=\"x:box\">\n" +
+            "    <div class=\"box\">\n" +
+            "        <slot></slot>\n" +
+            "    </div>\n" +
+            "</template>");
+
+        register(engine,
+            "<template name=\"test\">\n" +
+            "    <!-- a comment -->\n" +
+            "    <!--[if IE]><p>ie</p><![endif]-->\n" +
+            "    <p>Hello,   <b>{{ = name }}</b>\n" +
+            "        and   welcome</p>\n" +
+            "    <pre>  keep\n    this  </pre>\n" +
+            "    <div text-content=\"\">  <b>as   text</b>  </div>\n" +
+            "    <x:box>\n" +
+            "        <span>a   b</span>\n" +
+            "    </x:box>\n" +
+            "</template>");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder().with("name", "joe").build(), baos);
+
+        Assert.assertEquals(
+            // the whitespace after the conditional comment shares its text node, so it's only collapsed
+            "<!--[if IE]><p>ie</p><![endif]--> " +
+            "<p>Hello, <b>joe</b> and welcome</p>" +
+            "<pre>  keep\n    this  </pre>" +
+            "<div>  &lt;b&gt;as   text&lt;/b&gt;  </div>" +
+            "<div class=\"box\"><span>a b</span></div>",
+            new String(baos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,106 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.processing.Program;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ProgramTest
+{
+    @Test
+    public void compilesConditionsIntoJumps () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"test\"><div><template if=\"{{ show }}\"><p>yes</p><b slot=\"else\">no</b>" +
+            "</template></div><template is=\"foreach\" data=\"{{ items }}\"><i>{{ = item }}</i></template></template>");
+
+        Program program = ((TemplateRootElement) engine.getTemplate("test")).getInstructionSet().getRoot().getProgram();
+
+        Assert.assertArrayEquals(new int[] { Program.WRITE, Program.JUMP_UNLESS, Program.WRITE, Program.JUMP,
+            Program.WRITE, Program.WRITE, Program.FOREACH, Program.WRITE, Program.OUTPUT, Program.WRITE,
+            Program.NEXT, Program.JUMP }, opcodes(program));
+
+        // The condition jumps to the else content, the end of the content jumps past it
+        Assert.assertEquals(4, program.getCode()[(1 << 1) + 1]);
+        Assert.assertEquals(5, program.getCode()[(3 << 1) + 1]);
+        Assert.assertEquals("<p>yes</p>", new String((byte[]) program.getOperands()[2], StandardCharsets.UTF_8));
+
+        // Each item repeats the content of the foreach template, with nothing in its empty slot
+        Assert.assertEquals(12, program.getCode()[(6 << 1) + 1]);
+        Assert.assertEquals(7, program.getCode()[(10 << 1) + 1]);
+        Assert.assertEquals(12, program.getCode()[(11 << 1) + 1]);
+
+        Assert.assertEquals("<div><p>yes</p></div><i>a</i><i>b</i>", render(engine, true));
+        Assert.assertEquals("<div><b>no</b></div><i>a</i><i>b</i>", render(engine, false));
+    }
+
+    @Test
+    public void compilesIterationsIntoLoops () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"test\">" +
+            "<template is=\"foreach\" data=\"{{ items }}\" loop=\"meta\"><p>{{ = item }}" +
+            "<template is=\"{{ kind }}\" data=\"{{ items }}\" as=\"inner\"><i>{{ = inner }}</i></template>" +
+            "<template if=\"{{ meta.isFirst }}\"><b>first</b></template></p>" +
+            "<u slot=\"empty\">none</u></template></template>");
+
+        Program program = ((TemplateRootElement) engine.getTemplate("test")).getInstructionSet().getRoot().getProgram();
+
+        Assert.assertArrayEquals(new int[] { Program.FOREACH, Program.WRITE, Program.OUTPUT, Program.JUMP_UNLESS_FOREACH,
+            Program.FOREACH, Program.WRITE, Program.OUTPUT, Program.WRITE, Program.NEXT, Program.JUMP,
+            Program.JUMP_UNLESS, Program.WRITE, Program.JUMP, Program.WRITE, Program.NEXT, Program.JUMP, Program.WRITE },
+            opcodes(program));
+
+        Assert.assertEquals("<p>a<i>a</i><i>b</i><b>first</b></p><p>b<i>a</i><i>b</i></p>",
+            render(engine, MainScope.builder().with("items", Arrays.asList("a", "b")).with("kind", "foreach").build()));
+        Assert.assertEquals("<p>a<b>first</b></p><p>b</p>",
+            render(engine, MainScope.builder().with("items", Arrays.asList("a", "b")).with("kind", "other").build()));
+        Assert.assertEquals("<u>none</u>",
+            render(engine, MainScope.builder().with("items", Arrays.asList()).with("kind", "foreach").build()));
+    }
+
+    private static int[] opcodes (Program program)
+    {
+        int[] opcodes = new int[program.size()];
+
+        for(int i = 0; i < opcodes.length; i++)
+        {
+            opcodes[i] = program.getCode()[i << 1];
+        }
+
+        return opcodes;
+    }
+
+    private static String render (TemplatingEngine engine, MainScope scope) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), scope, baos);
+
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String render (TemplatingEngine engine, boolean show) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder()
+            .with("show", show)
+            .with("items", Arrays.asList("a", "b"))
+            .build(), baos);
+
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,44 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+public class ReferencedVariablesTest
+{
+    @Test
+    public void collectsReferencesThroughNestedTemplates () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"x:card\"><div title=\"{{ label }}\">{{ = label }} {{ = site.name }}" +
+            "<slot></slot></div></template>");
+        register(engine,
+            "<template name=\"test\">" +
+            "<x:card label=\"{{ user.name }}\"><p>{{ = label }} {{ = footer || fallback }}</p></x:card>" +
+            "<template is=\"foreach\" data=\"{{ orders }}\" as=\"order\" loop=\"info\">" +
+            "<p>{{ = order.id }} {{ = info.index }} {{ = currency }}</p>" +
+            "</template>" +
+            "<template if=\"{{ user.admin }}\"><b>{{ = stats.visits }}</b></template>" +
+            "</template>");
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("currency", "fallback", "footer", "orders", "site.name",
+            "stats.visits", "user.admin", "user.name")), engine.getReferencedPaths("test"));
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("currency", "fallback", "footer", "orders", "site",
+            "stats", "user")), engine.getReferencedVariables("test"));
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("label", "site.name")), engine.getReferencedPaths("x:card"));
+        Assert.assertNull(engine.getReferencedPaths("missing"));
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,65 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.metrics.RenderMetrics;
+import pt.neticle.ark.templating.metrics.TemplateStatistics;
+import pt.neticle.ark.templating.renderer.MainScope;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+public class RenderMetricsTest
+{
+    @Test
+    public void collectsPerTemplateMetrics () throws Exception
+    {
+        RenderMetrics metrics = new RenderMetrics();
+
+        TemplatingEngine engine = TemplatingEngine.initializer()
+            .withRenderListener(metrics)
+            .build();
+
+        register(engine, "<template name=\"x:item\"><b>{{ = label }}</b></template>");
+        register(engine, "<template name=\"test\"><div><x:item label=\"{{ name }}\"></x:item>" +
+            "<x:item label=\"{{ name }}\"></x:item>{{ = name }}</div></template>");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder().with("name", "joe").build(), baos);
+
+        Assert.assertEquals(1, metrics.getRenderCount());
+        Assert.assertEquals(2, metrics.getNestedExpansionCount());
+        Assert.assertEquals(baos.size(), metrics.getBytesWritten());
+        Assert.assertTrue(metrics.getExpressionEvaluations() > 0);
+        Assert.assertTrue(metrics.getMemoHits() > 0);
+
+        TemplateStatistics item = metrics.getTemplateStatistics("x:item");
+        Assert.assertEquals(2, item.getRenderCount());
+        Assert.assertEquals(2, item.getNestedCount());
+        Assert.assertEquals("<b>joe</b>".length() * 2, item.getBytesWritten());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.registerMBean(new ObjectName("test.ark.templating:type=RenderMetrics"));
+
+        try
+        {
+            Assert.assertEquals(1L, server.getAttribute(name, "RenderCount"));
+            Assert.assertEquals(2, ((TabularData) server.getAttribute(name, "TemplateStatistics")).size());
+        }
+        finally
+        {
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,55 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.DigestingOutputStream;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.renderer.RenderResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class RenderResultTest
+{
+    @Test
+    public void digestsDynamicOutput () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+        register(engine, "<template name=\"test\"><p>Hello, {{ = name }}</p></template>");
+
+        ByteArrayOutputStream joe = new ByteArrayOutputStream();
+        RenderResult joeResult = engine.renderWithDigest(engine.getTemplate("test"),
+            MainScope.builder().with("name", "joe").build(), joe);
+
+        ByteArrayOutputStream ann = new ByteArrayOutputStream();
+        RenderResult annResult = engine.renderWithDigest(engine.getTemplate("test"),
+            MainScope.builder().with("name", "ann").build(), ann);
+
+        Assert.assertEquals(joe.size(), joeResult.getBytesWritten());
+        Assert.assertEquals(DigestingOutputStream.digest(joe.toByteArray()), joeResult.getDigest());
+        Assert.assertNotEquals(joeResult.getETag(), annResult.getETag());
+        Assert.assertEquals(18, joeResult.getETag().length());
+    }
+
+    @Test
+    public void reusesResultOfStaticTemplates () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+        register(engine, "<template name=\"test\"><p class=\"static\">Nothing to see here</p></template>");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        RenderResult result = engine.renderWithDigest(engine.getTemplate("test"), MainScope.builder().build(), baos);
+
+        Assert.assertEquals("<p class=\"static\">Nothing to see here</p>", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals(new RenderResult(baos.size(), DigestingOutputStream.digest(baos.toByteArray())), result);
+        Assert.assertSame(result, engine.renderWithDigest(engine.getTemplate("test"), MainScope.builder().build(),
+            new ByteArrayOutputStream()));
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,72 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.processing.PreprocessedInstructionSet;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class StaticOutputTest
+{
+    @Test
+    public void cachesOutputOfStaticTemplates () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"x:box\"><div><slot name=\"title\"></slot><slot></slot></div></template>");
+        register(engine, "<template name=\"x:greeting\"><p>{{ = name }}</p></template>");
+        register(engine, "<template name=\"legal\"><x:box label=\"{{ = name }}\"><h1 slot=\"title\">Terms</h1>" +
+            "<p>text</p></x:box></template>");
+        register(engine, "<template name=\"page\"><x:box><x:greeting></x:greeting></x:box></template>");
+
+        Assert.assertTrue(instructions(engine, "legal").isStatic());
+        Assert.assertFalse(instructions(engine, "page").isStatic());
+        Assert.assertFalse(instructions(engine, "x:greeting").isStatic());
+
+        Assert.assertEquals("<div><h1>Terms</h1><p>text</p></div>", render(engine, "legal"));
+        Assert.assertEquals("<div><p>joe</p></div>", render(engine, "page"));
+
+        // Reloading a component invalidates the output of the templates using it
+        register(engine, "<template name=\"x:box\"><section><slot></slot></section></template>");
+
+        Assert.assertTrue(instructions(engine, "legal").isStatic());
+        Assert.assertEquals("<section><p>text</p></section>", render(engine, "legal"));
+    }
+
+    @Test
+    public void slotsPassedOnAreNotStatic () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"x:inner\"><i><slot></slot></i></template>");
+        register(engine, "<template name=\"x:outer\"><b><x:inner><slot></slot></x:inner></b></template>");
+        register(engine, "<template name=\"page\"><x:outer><span>{{ = name }}</span></x:outer>" +
+            "<x:outer><span>static</span></x:outer></template>");
+
+        Assert.assertFalse(instructions(engine, "page").isStatic());
+        Assert.assertEquals("<b><i><span>joe</span></i></b><b><i><span>static</span></i></b>", render(engine, "page"));
+    }
+
+    private static PreprocessedInstructionSet instructions (TemplatingEngine engine, String name)
+    {
+        return ((TemplateRootElement) engine.getTemplate(name)).getInstructionSet();
+    }
+
+    private static String render (TemplatingEngine engine, String name) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate(name), MainScope.builder().with("name", "joe").build(), baos);
+
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
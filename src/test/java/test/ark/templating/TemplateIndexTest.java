@@ -0,0 +1,101 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.neticle.ark.templating.TemplateIndex;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.exception.LoaderException;
+import pt.neticle.ark.templating.renderer.MainScope;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class TemplateIndexTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadsIndexedTemplatesFromJar () throws Exception
+    {
+        Path classes = folder.newFolder("classes").toPath();
+        write(classes.resolve("templates/x-box.html"), "<template name=\"x:box\"><div class=\"box\"><slot></slot></div></template>");
+        write(classes.resolve("templates/pages/test.html"), "<template name=\"test\"><x:box><p>{{ = name }}</p></x:box></template>");
+        write(classes.resolve("other/ignored.html"), "<template name=\"ignored\"></template>");
+
+        TemplateIndex index = TemplateIndex.generate(classes, "templates");
+        Assert.assertEquals(2, index.getEntries().size());
+        Assert.assertEquals("templates/pages/test.html", index.getEntries().get(0).getResource());
+
+        Path jar = jar(classes, index);
+
+        try(URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, null))
+        {
+            TemplatingEngine engine = TemplatingEngine.initializer()
+                .withClasspathTemplates(classLoader)
+                .build();
+
+            Assert.assertFalse(engine.hasTemplate("ignored"));
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            engine.render(engine.getTemplate("test"), MainScope.builder().with("name", "joe").build(), baos);
+
+            Assert.assertEquals("<div class=\"box\"><p>joe</p></div>", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(expected = LoaderException.class)
+    public void rejectsOutdatedIndex () throws Exception
+    {
+        Path classes = folder.newFolder("classes").toPath();
+        write(classes.resolve("templates/test.html"), "<template name=\"test\"><p>one</p></template>");
+
+        TemplateIndex index = TemplateIndex.generate(classes, "templates");
+        write(classes.resolve("templates/test.html"), "<template name=\"test\"><p>two</p></template>");
+
+        try(URLClassLoader classLoader = new URLClassLoader(new URL[] { jar(classes, index).toUri().toURL() }, null))
+        {
+            TemplatingEngine.initializer()
+                .withClasspathTemplates(classLoader)
+                .build();
+        }
+    }
+
+    private Path jar (Path classes, TemplateIndex index) throws Exception
+    {
+        Path jar = folder.newFile("templates.jar").toPath();
+
+        try(JarOutputStream jos = new JarOutputStream(Files.newOutputStream(jar)))
+        {
+            jos.putNextEntry(new JarEntry(TemplateIndex.LOCATION));
+            index.write(jos);
+
+            for(TemplateIndex.Entry entry : index.getEntries())
+            {
+                jos.putNextEntry(new JarEntry(entry.getResource()));
+                jos.write(Files.readAllBytes(classes.resolve(entry.getResource())));
+            }
+        }
+
+        return jar;
+    }
+
+    private static void write (Path file, String content) throws Exception
+    {
+        Files.createDirectories(file.getParent());
+
+        try(OutputStream os = Files.newOutputStream(file))
+        {
+            os.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.processing.ExpandTemplateInstruction;
+import pt.neticle.ark.templating.processing.ExpressionResultOutputInstruction;
+import pt.neticle.ark.templating.processing.Instruction;
+import pt.neticle.ark.templating.processing.PreprocessedInstructionSet;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class TemplateLinkingTest
+{
+    @Test
+    public void relinksDependentsThroughIntermediateTemplates () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"x:inner\"><i>old</i></template>");
+        register(engine, "<template name=\"x:box\"><div><x:inner></x:inner><slot></slot></div></template>");
+        register(engine, "<template name=\"test\"><x:box><p>{{ = name }}</p></x:box></template>");
+
+        Assert.assertEquals("<div><i>old</i><p>joe</p></div>", render(engine));
+
+        PreprocessedInstructionSet box = ((TemplateRootElement) engine.getTemplate("x:box")).getInstructionSet();
+        Assert.assertSame(box, findExpansion(engine, "test").getLinkedInstructionSet());
+
+        PreprocessedInstructionSet page = ((TemplateRootElement) engine.getTemplate("test")).getInstructionSet();
+
+        // The page doesn't use x:inner itself, but has to be linked to the new instruction set of x:box
+        register(engine, "<template name=\"x:inner\"><b>new</b></template>");
+
+        Assert.assertEquals("<div><b>new</b><p>joe</p></div>", render(engine));
+        Assert.assertNotSame(box, findExpansion(engine, "test").getLinkedInstructionSet());
+        Assert.assertSame(((TemplateRootElement) engine.getTemplate("x:box")).getInstructionSet(),
+            findExpansion(engine, "test").getLinkedInstructionSet());
+
+        // ... as a copy of its previous set, which keeps its links for renders still using it
+        PreprocessedInstructionSet copy = ((TemplateRootElement) engine.getTemplate("test")).getInstructionSet();
+        Assert.assertNotSame(page, copy);
+        Assert.assertSame(box, findExpansion(page).getLinkedInstructionSet());
+        Assert.assertSame(findOutput(page).getExpression(), findOutput(copy).getExpression());
+    }
+
+    @Test
+    public void resolvesStaticOutputAgainAfterRelinking () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"x:inner\"><i>old</i></template>");
+        register(engine, "<template name=\"x:box\"><div><x:inner></x:inner></div></template>");
+        register(engine, "<template name=\"test\"><x:box></x:box></template>");
+
+        PreprocessedInstructionSet page = ((TemplateRootElement) engine.getTemplate("test")).getInstructionSet();
+        Assert.assertEquals("<div><i>old</i></div>", new String(page.getStaticOutput(), StandardCharsets.UTF_8));
+
+        register(engine, "<template name=\"x:inner\"><b>new</b></template>");
+
+        PreprocessedInstructionSet copy = ((TemplateRootElement) engine.getTemplate("test")).getInstructionSet();
+        Assert.assertEquals("<div><b>new</b></div>", new String(copy.getStaticOutput(), StandardCharsets.UTF_8));
+        Assert.assertEquals("<div><b>new</b></div>", render(engine));
+
+        Assert.assertEquals("<div><i>old</i></div>", new String(page.getStaticOutput(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsRendersInProgressOnThePreviousTemplates () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        register(engine, "<template name=\"x:inner\"><i>old</i></template>");
+        register(engine, "<template name=\"x:box\"><div><x:inner></x:inner></div></template>");
+        register(engine, "<template name=\"test\"><x:box></x:box>{{ = reload }}<x:box></x:box></template>");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder().with("reload", () ->
+        {
+            try
+            {
+                register(engine, "<template name=\"x:inner\"><b>new</b></template>");
+            } catch(Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+
+            return "|";
+        }).build(), baos);
+
+        // The whole render sees the templates as they were when it started
+        Assert.assertEquals("<div><i>old</i></div>|<div><i>old</i></div>",
+            new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals("<div><b>new</b></div><div><b>new</b></div>", render(engine));
+    }
+
+    private static ExpandTemplateInstruction findExpansion (TemplatingEngine engine, String template)
+    {
+        return findExpansion(((TemplateRootElement) engine.getTemplate(template)).getInstructionSet());
+    }
+
+    private static ExpandTemplateInstruction findExpansion (PreprocessedInstructionSet instructionSet)
+    {
+        Instruction i = instructionSet.getRoot();
+
+        while(!i.is(Instruction.Type.EXPAND_TEMPLATE))
+        {
+            i = i.getNext();
+        }
+
+        return (ExpandTemplateInstruction) i;
+    }
+
+    private static ExpressionResultOutputInstruction findOutput (PreprocessedInstructionSet instructionSet)
+    {
+        Instruction i = findExpansion(instructionSet).getPreprocessedSlotMembers().get("@unassigned").get(0);
+
+        while(!i.is(Instruction.Type.EXPRESSION_RESULT_OUTPUT))
+        {
+            i = i.getNext();
+        }
+
+        return (ExpressionResultOutputInstruction) i;
+    }
+
+    private static String render (TemplatingEngine engine) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder().with("name", "joe").build(), baos);
+
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,57 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.structure.properties.PropertyAccess;
+import pt.neticle.ark.templating.structure.properties.TemplateModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class TemplateModelTest
+{
+    @TemplateModel
+    public static class Person
+    {
+        public final int age;
+        private final String name;
+
+        public Person (String name, int age)
+        {
+            this.name = name;
+            this.age = age;
+        }
+
+        public String getName ()
+        {
+            return name;
+        }
+
+        public boolean isAdult ()
+        {
+            return age >= 18;
+        }
+    }
+
+    @Test
+    public void generatedAccessorsAreDiscovered () throws Exception
+    {
+        PropertyAccess access = new PropertyAccess();
+        access.addServiceResolvers(getClass().getClassLoader());
+
+        Assert.assertTrue(access.getAccessor(Person.class, "name").getClass().getName()
+            .startsWith(TemplateModelTest.class.getName() + "_Person_TemplateAccessors"));
+
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+        engine.registerTemplate(new ByteArrayInputStream(("<template name=\"test\"><p>{{ = person.name }} " +
+            "{{ = person.age }} {{ = person.adult }} {{ = person.Name }}</p></template>").getBytes(StandardCharsets.UTF_8)));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder().with("person", new Person("joe", 30)).build(), baos);
+
+        Assert.assertEquals("<p>joe 30 true joe</p>", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,113 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.neticle.ark.templating.TemplatePretokenizer;
+import pt.neticle.ark.templating.TemplateIndex;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.exception.PreprocessingException;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.structure.TemplateRootElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class TemplatePretokenizerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pretokenizesTemplates () throws Exception
+    {
+        Path sources = folder.newFolder("templates").toPath();
+        Path classes = folder.newFolder("classes").toPath();
+
+        write(sources.resolve("x-box.html"), "<template name=\"x:box\"><div class=\"box\"><slot></slot></div></template>");
+        write(sources.resolve("pages/test.html"),
+            "<template name=\"test\"><x:box><p>{{ = name }}</p><script>if(a < b) {}</script></x:box></template>");
+
+        List<String> errors = new TemplatePretokenizer(TemplatingEngine.initializer()).pretokenize(sources, classes, "templates");
+
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+        Assert.assertTrue(Files.exists(classes.resolve("templates/pages/test.arkt")));
+
+        try(URLClassLoader classLoader = new URLClassLoader(new URL[] { classes.toUri().toURL() }, null);
+            InputStream index = classLoader.getResourceAsStream(TemplateIndex.LOCATION))
+        {
+            Assert.assertEquals(2, TemplateIndex.read(index).getEntries().size());
+
+            TemplatingEngine engine = TemplatingEngine.initializer()
+                .withClasspathTemplates(classLoader)
+                .build();
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            engine.render(engine.getTemplate("test"), MainScope.builder().with("name", "joe").build(), baos);
+
+            Assert.assertEquals("<div class=\"box\"><p>joe</p><script>if(a < b) {}</script></div>",
+                new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void reportsErrors () throws Exception
+    {
+        Path sources = folder.newFolder("templates").toPath();
+        Path classes = folder.newFolder("classes").toPath();
+
+        write(sources.resolve("mismatch.html"), "<template name=\"a\"><div></span></template>");
+        write(sources.resolve("function.html"), "<template name=\"b\"><p>{{ = unknownFn(name) }}</p></template>");
+        write(sources.resolve("element.html"), "<template name=\"c\"><x:missing></x:missing><t:flush></t:flush></template>");
+
+        List<String> errors = new TemplatePretokenizer(TemplatingEngine.initializer()).pretokenize(sources, classes, "templates");
+
+        Assert.assertEquals(errors.toString(), 3, errors.size());
+        Assert.assertTrue(errors.get(0), errors.get(0).contains("function.html") && errors.get(0).contains("unknownFn"));
+        Assert.assertTrue(errors.get(1), errors.get(1).contains("mismatch.html") && errors.get(1).contains("Closing tag mismatch"));
+        Assert.assertTrue(errors.get(2), errors.get(2).contains("element.html") && errors.get(2).contains("x:missing"));
+        Assert.assertFalse(Files.exists(classes.resolve(TemplateIndex.LOCATION)));
+    }
+
+    @Test
+    public void reportsTheElementPreprocessingFailedAt () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer().build();
+
+        engine.registerTemplate(new ByteArrayInputStream(
+            "<template name=\"test\"><div><x:box></x:box></div></template>".getBytes(StandardCharsets.UTF_8)));
+
+        try
+        {
+            ((TemplateRootElement) engine.getTemplate("test")).preprocess((name) ->
+            {
+                if(name.equals("x:box"))
+                {
+                    throw new IllegalStateException("Unable to load " + name);
+                }
+
+                return null;
+            });
+
+            Assert.fail();
+        } catch(PreprocessingException e)
+        {
+            Assert.assertEquals("x:box", e.getElement());
+            Assert.assertEquals("<x:box>: Unable to load x:box", e.getMessage());
+        }
+    }
+
+    private static void write (Path file, String content) throws Exception
+    {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,77 @@
+package test.ark.templating;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pt.neticle.ark.templating.TemplatingEngine;
+import pt.neticle.ark.templating.exception.RenderingException;
+import pt.neticle.ark.templating.renderer.MainScope;
+import pt.neticle.ark.templating.structure.expressions.Truthiness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TruthinessTest
+{
+    @Test
+    public void extendedRules () throws Exception
+    {
+        TemplatingEngine engine = TemplatingEngine.initializer()
+            .withTruthiness(Truthiness.EXTENDED)
+            .build();
+
+        register(engine, "<template name=\"test\"><template if=\"{{ emptyList }}\"><i>empty</i></template>" +
+            "<template if=\"{{ items }}\"><i>items</i></template><template if=\"{{ zero }}\"><i>zero</i></template>" +
+            "<template if=\"{{ text && !zero }}\"><i>text</i></template><template if=\"{{ true }}\"><i>literal</i>" +
+            "</template><b>{{ = If(items, 'yes', 'no') }}</b></template>");
+
+        Assert.assertEquals("<i>items</i><i>text</i><i>literal</i><b>yes</b>", render(engine));
+    }
+
+    @Test
+    public void classicRules () throws Exception
+    {
+        TemplatingEngine engine = new TemplatingEngine();
+
+        register(engine, "<template name=\"test\"><template if=\"{{ items }}\"><i>items</i></template>" +
+            "<template if=\"{{ text }}\"><i>text</i></template><template if=\"{{ flag }}\"><i>flag</i></template>" +
+            "<template if=\"{{ true }}\"><i>literal</i></template><b>{{ = 10 }}</b></template>");
+
+        // Only Booleans and the text "true" count as true, and the variable named true hides the literal,
+        // while numbers are always literals
+        Assert.assertEquals("<i>flag</i><b>10</b>", render(engine));
+    }
+
+    @Test(expected = RenderingException.class)
+    public void classicIfRequiresBoolean () throws Exception
+    {
+        TemplatingEngine engine = new TemplatingEngine();
+
+        register(engine, "<template name=\"test\"><b>{{ = If(items, 'yes', 'no') }}</b></template>");
+
+        render(engine);
+    }
+
+    private static String render (TemplatingEngine engine) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.render(engine.getTemplate("test"), MainScope.builder()
+            .with("emptyList", Collections.emptyList())
+            .with("items", Arrays.asList("a"))
+            .with("zero", 0)
+            .with("text", "hello")
+            .with("flag", "True")
+            .with("true", false)
+            .with("10", "ten")
+            .build(), baos);
+
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void register (TemplatingEngine engine, String template) throws Exception
+    {
+        engine.registerTemplate(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+}